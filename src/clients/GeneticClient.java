@@ -4,7 +4,6 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -14,7 +13,7 @@ import genetic.*;
 
 public class GeneticClient {
 
-    private Integer[] weights;
+    private int[] weights;
     private byte player;
     private long endTime;
 
@@ -29,7 +28,7 @@ public class GeneticClient {
     private static boolean file = false;
     private static double[] firstFValues;
 
-    public GeneticClient(Integer[] weights, byte player, int minutes) {
+    public GeneticClient(int[] weights, byte player, int minutes) {
         this.weights = weights;
         this.player = player;
         this.endTime = minutes * 60 * 1000;
@@ -40,7 +39,7 @@ public class GeneticClient {
         long end = System.currentTimeMillis();
         TablutMetrics result = new TablutMetrics();
         TablutGame train = new TablutGame(weights);
-        TablutGame enemy = new TablutGame(new Integer[] {1, 1, 1, 1, 1});
+        TablutGame enemy = new TablutGame(new int[] {1, 1, 1, 1, 1});
         TablutSearch mctsTrain = new TablutSearch(train, 10);
         TablutSearch mctsEnemy = new TablutSearch(enemy, 10);
         TablutState s = new TablutState(TablutState.WHITE);
@@ -137,7 +136,10 @@ public class GeneticClient {
     }
 
     private static Individual<Integer> getEmpiricalIndividual() {
-        return new Individual<>(Arrays.asList(Weights.getWeights()));
+        List<Integer> weights = new ArrayList<>(WEIGHTS_NUMBER);
+        for (int weight : Weights.getWeights())
+            weights.add(weight);
+        return new Individual<>(weights);
     }
 
     private static Individual<Integer> getIndividualRandom() {
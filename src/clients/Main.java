@@ -10,6 +10,8 @@ public class Main {
         TablutGame game = new TablutGame(Weights.getWeights());
         
         TablutSearch mcts = new TablutSearch(game, 10);
+        if(args.length >= 1)
+            mcts.setSeed(Long.parseLong(args[0]));
         while(!state.isBlackWin() && !state.isWhiteWin() && !state.isDraw()) {
             TablutAction a = mcts.monteCarloTreeSearch(state);
             
@@ -0,0 +1,114 @@
+package clients;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import domain.*;
+import utils.WeightedSampler;
+
+public class PlayoutBenchmark {
+
+    private static final int POSITIONS_NUMBER = 20;
+    private static final int POSITION_PLIES = 30;
+    private static final long THROUGHPUT_MILLIS = 3000;
+    private static final int MAX_MOVES = 80;
+    // no game ends this early without a winner once both sides really play
+    private static final int MIN_MOVES = 6;
+
+    private static final int[] HEAVY_PLIES = { 0, 10, 25, 100 };
+    private static final int CUTOFF_PLIES = 20;
+
+    public static void main(String[] args) {
+        double timeout = args.length >= 1 ? Double.parseDouble(args[0]) : 2;
+        int games = args.length >= 2 ? Integer.parseInt(args[1]) : 4;
+        long seed = args.length >= 3 ? Long.parseLong(args[2]) : System.nanoTime();
+        System.out.println("Seed " + seed);
+        WeightedSampler random = new WeightedSampler(seed);
+
+        List<TablutGame> configs = new ArrayList<>();
+        for (int plies : HEAVY_PLIES) {
+            PlayoutPolicy policy = plies == 0 ? PlayoutPolicy.LIGHT
+                    : plies >= 100 ? PlayoutPolicy.HEAVY : PlayoutPolicy.HYBRID;
+            configs.add(new TablutGame(Weights.getWeights(), policy, plies));
+        }
+        configs.add(0, new TablutGame(Weights.getWeights(), PlayoutPolicy.LIGHT, 0, CUTOFF_PLIES));
+
+        List<TablutState> positions = getPositions(random);
+        WeightedSampler.set(random.split());
+        for (TablutGame game : configs)
+            System.out.printf("%-20s %8.0f playouts/s%n", getName(game), getThroughput(game, positions));
+
+        TablutGame reference = configs.get(configs.size() - 1);
+        for (TablutGame game : configs) {
+            if (game == reference)
+                continue;
+            double score = 0;
+            for (int i = 0; i < games; i++) {
+                byte player = i % 2 == 0 ? TablutState.WHITE : TablutState.BLACK;
+                score += play(game, reference, player, timeout, random.nextLong());
+            }
+            System.out.printf("%-20s score %.2f/%d against %s%n", getName(game), score, games, getName(reference));
+        }
+    }
+
+    private static String getName(TablutGame game) {
+        String name = game.getPlayoutPolicy().toString();
+        if (game.getPlayoutPolicy() == PlayoutPolicy.HYBRID)
+            name += "(" + game.getHeavyPlies() + ")";
+        if (game.getCutoffPlies() > 0)
+            name += " cutoff " + game.getCutoffPlies();
+        return name;
+    }
+
+    private static List<TablutState> getPositions(WeightedSampler random) {
+        TablutGame game = new TablutGame(Weights.getWeights());
+        List<TablutState> positions = new ArrayList<>();
+        while (positions.size() < POSITIONS_NUMBER) {
+            TablutState s = new TablutState(TablutState.WHITE);
+            for (int ply = 0; ply < POSITION_PLIES && !s.isWhiteWin() && !s.isBlackWin() && !s.isDraw(); ply++) {
+                List<SimulateAction> actions = s.getSimulatingActions(Weights.getWeights());
+                if (actions.isEmpty())
+                    break;
+                s = game.getNextState(s, actions.get(random.nextInt(actions.size())));
+            }
+            if (!s.isWhiteWin() && !s.isBlackWin() && !s.isDraw())
+                positions.add(s);
+        }
+        return positions;
+    }
+
+    private static double getThroughput(TablutGame game, List<TablutState> positions) {
+        long start = System.currentTimeMillis();
+        long playouts = 0;
+        while (System.currentTimeMillis() - start < THROUGHPUT_MILLIS) {
+            for (TablutState s : positions)
+                game.getPlayoutResult(s);
+            playouts += positions.size();
+        }
+        return playouts * 1000.0 / (System.currentTimeMillis() - start);
+    }
+
+    private static double play(TablutGame game, TablutGame enemy, byte player, double timeout, long seed) {
+        TablutSearch mcts = new TablutSearch(game, timeout);
+        TablutSearch mctsEnemy = new TablutSearch(enemy, timeout);
+        mcts.setSeed(seed);
+        mctsEnemy.setSeed(seed + 1);
+        TablutState s = new TablutState(TablutState.WHITE);
+        int moves = 0;
+        while (!s.isWhiteWin() && !s.isBlackWin() && !s.isDraw() && moves < MAX_MOVES) {
+            TablutAction a = s.getPlayerTurn() == player ? mcts.monteCarloTreeSearch(s) : mctsEnemy.monteCarloTreeSearch(s);
+            if (a == null)
+                break;
+            s = game.getNextState(s, a);
+            moves++;
+        }
+        if (moves < MIN_MOVES && !s.isWhiteWin() && !s.isBlackWin())
+            throw new IllegalStateException("Game ended after " + moves + " plies without a winner"
+                    + (s.isDraw() ? " by repetition" : ""));
+        if ((s.isWhiteWin() && player == TablutState.WHITE) || (s.isBlackWin() && player == TablutState.BLACK))
+            return 1;
+        if (s.isWhiteWin() || s.isBlackWin())
+            return 0;
+        return 0.5;
+    }
+}
@@ -0,0 +1,23 @@
+package clients;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import domain.*;
+
+public class TablebaseClient {
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        if (args.length < 2) {
+            System.out.println("Usage: TablebaseClient <white pawns> <black pawns> [file]");
+            System.exit(-1);
+        }
+        int whitePawns = Integer.parseInt(args[0]);
+        int blackPawns = Integer.parseInt(args[1]);
+        String path = args.length >= 3 ? args[2] : Tablebase.DEFAULT_PATH;
+        TablebaseGenerator generator = new TablebaseGenerator(whitePawns, blackPawns,
+                Runtime.getRuntime().availableProcessors());
+        generator.generate();
+        generator.write(path);
+        System.out.println("Tablebase written to " + path);
+    }
+}
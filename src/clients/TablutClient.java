@@ -2,14 +2,15 @@ package clients;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.Socket;
 import java.net.UnknownHostException;
-import java.util.LinkedList;
 
 import com.google.gson.Gson;
 
 import domain.*;
+import montecarlo.Parallelism;
 import utils.*;
 
 public class TablutClient {
@@ -118,12 +119,19 @@ public class TablutClient {
         taprut.declareName();
 
         TablutGame game = new TablutGame(Weights.getWeights());
-        TablutSearch mcts = new TablutSearch(game, taprut.getTimeout());
+        if (new File(Tablebase.DEFAULT_PATH).exists())
+            game.setTablebase(Tablebase.load(Tablebase.DEFAULT_PATH));
+        int threads = args.length >= 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        Parallelism parallelism = args.length >= 5 ? Parallelism.valueOf(args[4].toUpperCase()) : Parallelism.TREE;
+        TablutSearch mcts = new TablutSearch(game, taprut.getTimeout(), threads, parallelism);
+        boolean ponder = args.length < 6 || Boolean.parseBoolean(args[5]);
+        if(args.length >= 7)
+            mcts.setSeed(Long.parseLong(args[6]));
         String myTurn = args[0].toUpperCase();
         String turn = myTurn;
         boolean firstMove = true;
         TablutAction firstAction = null;
-        LinkedList<TablutState> drawConditions = new LinkedList<>();
+        DrawHistory drawConditions = DrawHistory.EMPTY;
         while(!turn.equals(TablutClient.BLACKWIN) && !turn.equals(TablutClient.WHITEWIN) 
             && !turn.equals(TablutClient.DRAW)) {
             taprut.read();
@@ -141,8 +149,11 @@ public class TablutClient {
                 firstMove = false;
                 drawConditions = s.getDrawConditions();
                 System.out.println(s.toString());
+                if(ponder)
+                    mcts.startPondering(s);
             }
         }
+        mcts.stopPondering();
         
         if(turn.equals(TablutClient.DRAW)) 
             System.out.println("It's a draw!");
@@ -0,0 +1,163 @@
+package domain;
+
+public final class BitBoard {
+    public static final int SIZE = TablutState.BOARD_SIZE;
+    public static final int SQUARES = SIZE * SIZE;
+    public static final int NONE = -1;
+    public static final int CITADEL = SIZE * SIZE / 2;
+
+    public static final int UP = 0;
+    public static final int RIGHT = 1;
+    public static final int DOWN = 2;
+    public static final int LEFT = 3;
+
+    // Squares are numbered row * 9 + column. Rows 0-6 live in the low word and rows 7-8 in the
+    // high word, so every row is a contiguous 9-bit field of one of the two longs.
+    public static final int HIGH_OFFSET = 63;
+    public static final int HIGH_ROW = HIGH_OFFSET / SIZE;
+    public static final int LINE_MASK = (1 << SIZE) - 1;
+
+    public static final long[] ESCAPES = mask(TablutState.initBoard(), TablutState.ESCAPE);
+    public static final long[] CAMPS = mask(TablutState.initBoard(), TablutState.CAMP);
+    public static final long[] BOARD_BLOCKERS = initBoardBlockers();
+
+    private static final int[] neighbours = initNeighbours();
+
+    private BitBoard() {
+    }
+
+    private static long[] initBoardBlockers() {
+        long[] blockers = new long[] { CAMPS[0], CAMPS[1] };
+        for (int square : new int[] { square(0, 4), square(4, 0), square(SIZE - 1, 4), square(4, SIZE - 1) }) {
+            blockers[0] &= ~low(square);
+            blockers[1] &= ~high(square);
+        }
+        blockers[0] |= low(CITADEL);
+        blockers[1] |= high(CITADEL);
+        return blockers;
+    }
+
+    private static int[] initNeighbours() {
+        int[] neighbours = new int[SQUARES * 4];
+        for (int square = 0; square < SQUARES; square++) {
+            int r = row(square);
+            int c = column(square);
+            neighbours[square * 4 + UP] = r > 0 ? square - SIZE : NONE;
+            neighbours[square * 4 + RIGHT] = c < SIZE - 1 ? square + 1 : NONE;
+            neighbours[square * 4 + DOWN] = r < SIZE - 1 ? square + SIZE : NONE;
+            neighbours[square * 4 + LEFT] = c > 0 ? square - 1 : NONE;
+        }
+        return neighbours;
+    }
+
+    public static long[] mask(byte[][] cells, byte value) {
+        long[] mask = new long[2];
+        for (int i = 0; i < SIZE; i++)
+            for (int j = 0; j < SIZE; j++)
+                if (cells[i][j] == value) {
+                    mask[0] |= low(square(i, j));
+                    mask[1] |= high(square(i, j));
+                }
+        return mask;
+    }
+
+    public static int square(int row, int column) {
+        return row * SIZE + column;
+    }
+
+    public static int square(Coordinates c) {
+        return c.row * SIZE + c.column;
+    }
+
+    public static int row(int square) {
+        return square / SIZE;
+    }
+
+    public static int column(int square) {
+        return square % SIZE;
+    }
+
+    public static int neighbour(int square, int direction) {
+        return neighbours[square * 4 + direction];
+    }
+
+    public static int opposite(int direction) {
+        return direction ^ 2;
+    }
+
+    public static boolean isVertical(int direction) {
+        return direction == UP || direction == DOWN;
+    }
+
+    public static int direction(int from, int to) {
+        if (row(from) == row(to))
+            return from > to ? LEFT : RIGHT;
+        return from > to ? UP : DOWN;
+    }
+
+    public static boolean isBorder(int square) {
+        int r = row(square);
+        int c = column(square);
+        return r == 0 || r == SIZE - 1 || c == 0 || c == SIZE - 1;
+    }
+
+    public static int transpose(int square) {
+        return square % SIZE * SIZE + square / SIZE;
+    }
+
+    public static Coordinates toCoordinates(int square) {
+        return new Coordinates(square / SIZE, square % SIZE);
+    }
+
+    public static long low(int square) {
+        return square < HIGH_OFFSET ? 1L << square : 0L;
+    }
+
+    public static long high(int square) {
+        return square < HIGH_OFFSET ? 0L : 1L << (square - HIGH_OFFSET);
+    }
+
+    public static boolean contains(long lo, long hi, int square) {
+        if (square < HIGH_OFFSET)
+            return (lo & 1L << square) != 0;
+        return (hi & 1L << (square - HIGH_OFFSET)) != 0;
+    }
+
+    public static boolean contains(long[] mask, int square) {
+        return contains(mask[0], mask[1], square);
+    }
+
+    public static int count(long lo, long hi) {
+        return Long.bitCount(lo) + Long.bitCount(hi);
+    }
+
+    public static int next(long lo, long hi, int square) {
+        int from = square + 1;
+        if (from < HIGH_OFFSET) {
+            long bits = lo & (-1L << from);
+            if (bits != 0)
+                return Long.numberOfTrailingZeros(bits);
+            from = HIGH_OFFSET;
+        }
+        long bits = hi & (-1L << (from - HIGH_OFFSET));
+        return bits != 0 ? HIGH_OFFSET + Long.numberOfTrailingZeros(bits) : NONE;
+    }
+
+    public static int first(long lo, long hi) {
+        return next(lo, hi, NONE);
+    }
+
+    public static int rowBits(long lo, long hi, int row) {
+        if (row < HIGH_ROW)
+            return (int) (lo >>> (row * SIZE)) & LINE_MASK;
+        return (int) (hi >>> ((row - HIGH_ROW) * SIZE)) & LINE_MASK;
+    }
+
+    public static int columnBits(long lo, long hi, int column) {
+        int bits = 0;
+        for (int i = 0; i < SIZE; i++)
+            if (contains(lo, hi, square(i, column)))
+                bits |= 1 << i;
+        return bits;
+    }
+}
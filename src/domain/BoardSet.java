@@ -2,4 +2,6 @@ package domain;
 
 public interface BoardSet {
     public boolean contains(Coordinates c);
+
+    public boolean contains(int row, int column);
 }
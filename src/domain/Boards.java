@@ -15,13 +15,9 @@ public class Boards {
 
     static final byte BCELL = 1;
 
-    private interface GetValue {
-        public byte getValue(byte[][] b, Coordinates c, int i);
-    }
-
-    private interface GetDirection {
-        public int getDirection(Coordinates c);
-    }
+    private static final int[] whiteRows = initWhiteLines(true);
+    private static final int[] whiteColumns = initWhiteLines(false);
+    private static final long[] blackCells = BitBoard.mask(blackBoard, BCELL);
 
     private static byte[][] initWhiteBoard() {
         return new byte[][] { 
@@ -51,6 +47,15 @@ public class Boards {
         };
     }
 
+    private static int[] initWhiteLines(boolean row) {
+        int[] lines = new int[TablutState.BOARD_SIZE];
+        for (int i = 0; i < TablutState.BOARD_SIZE; i++)
+            for (int j = 0; j < TablutState.BOARD_SIZE; j++)
+                if ((row ? whiteBoard[i][j] : whiteBoard[j][i]) != OTHER)
+                    lines[i] |= 1 << j;
+        return lines;
+    }
+
     private static HashMap<Coordinates, Coordinates> initEscapesToPeak() {
         HashMap<Coordinates, Coordinates> escapesToPeak = new HashMap<>();
         escapesToPeak.put(new Coordinates(0, 2), new Coordinates(4, 1));
@@ -68,43 +73,44 @@ public class Boards {
         return escapesToPeak.get(c);
     }
 
-    public static boolean isValidPositioning(byte[][] pawns, TablutAction action) {
-        Coordinates pos = action.pawn.position;
-        Coordinates dest = action.coordinates;
-        if (whiteBoard[dest.row][dest.column] == OTHER)
+    public static boolean isValidPositioning(TablutState state, TablutAction action) {
+        return isValidPositioning(state, BitBoard.square(action.pawn.position), BitBoard.square(action.coordinates));
+    }
+
+    public static boolean isValidPositioning(TablutState state, int from, int to) {
+        int posRow = BitBoard.row(from);
+        int posColumn = BitBoard.column(from);
+        int destRow = BitBoard.row(to);
+        int destColumn = BitBoard.column(to);
+        if (whiteBoard[destRow][destColumn] == OTHER)
             return false;
-        pawns[pos.row][pos.column] = TablutState.EMPTY;
-        boolean result = isValidPositioning(pawns, dest, (byte[][] p, Coordinates d, int i) -> p[d.row][i], (Coordinates c) -> c.column)
-                || isValidPositioning(pawns, dest, (byte[][] p, Coordinates d, int i) -> p[i][dest.column], (Coordinates c) -> c.row);
-        pawns[pos.row][pos.column] = action.pawn.getPawnType();
-        return result;
+        int row = state.getWhiteRow(destRow) & whiteRows[destRow];
+        if (posRow == destRow)
+            row &= ~(1 << posColumn);
+        int column = state.getWhiteColumn(destColumn) & whiteColumns[destColumn];
+        if (posColumn == destColumn)
+            column &= ~(1 << posRow);
+        return (!isCampFar(destRow, destColumn, whiteBoard[destRow][2]) && isValidPositioning(row, destColumn))
+                || (!isCampFar(destRow, destColumn, whiteBoard[2][destColumn]) && isValidPositioning(column, destRow));
+    }
+
+    private static boolean isCampFar(int row, int column, byte peak) {
+        return whiteBoard[row][column] == CAMPFAR && peak == OTHER;
     }
 
-    private static boolean isValidPositioning(byte[][] pawns, Coordinates dest, GetValue gv, GetDirection gd) {
-        boolean result = true;
-        int whiteFound = 0;
-        if (whiteBoard[dest.row][dest.column] == CAMPFAR && gv.getValue(whiteBoard, dest, 2) == OTHER)
+    private static boolean isValidPositioning(int whites, int direction) {
+        int before = whites & 0xF;
+        int after = whites >>> 5;
+        if (before != 0 && direction < 4 || after != 0 && direction > 4)
             return false;
-        for (int i = 0; i < TablutState.BOARD_SIZE; i++) {
-            if (i != 4 && gv.getValue(whiteBoard, dest, i) != OTHER && (gv.getValue(pawns, dest, i) == TablutState.WHITE
-                    || gv.getValue(pawns, dest, i) == TablutState.KING)) {
-                if (i < 4 && gd.getDirection(dest) < 4 || i > 4 && gd.getDirection(dest) > 4) {
-                    result = false;
-                    break;
-                } else
-                    whiteFound++;
-                if (i < 4)
-                    i = 4;
-                else if (whiteFound > 1) {
-                    result = false;
-                    break;
-                }
-            }
-        }
-        return result;
+        return (before != 0 ? 1 : 0) + Integer.bitCount(after) <= 1;
     }
 
 	public static boolean isBlackCell(TablutAction action) {
-		return blackBoard[action.coordinates.row][action.coordinates.column] == BCELL;
+		return isBlackCell(BitBoard.square(action.coordinates));
+	}
+
+	public static boolean isBlackCell(int square) {
+		return BitBoard.contains(blackCells, square);
 	}
 }
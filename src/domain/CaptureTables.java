@@ -0,0 +1,54 @@
+package domain;
+
+final class CaptureTables {
+    // [square * 4 + direction] -> the square that closes a custodian capture of the neighbour in that direction
+    private static final int[] custodians = initCustodians();
+
+    // [square] -> squares that must all hold black pawns to capture the king standing on that square,
+    // empty when two opposite blockers are enough
+    private static final long[] kingGuardsLo = new long[BitBoard.SQUARES];
+    private static final long[] kingGuardsHi = new long[BitBoard.SQUARES];
+
+    static {
+        for (int square = 0; square < BitBoard.SQUARES; square++)
+            initKingGuards(square);
+    }
+
+    private CaptureTables() {
+    }
+
+    private static int[] initCustodians() {
+        int[] custodians = new int[BitBoard.SQUARES * 4];
+        for (int square = 0; square < BitBoard.SQUARES; square++)
+            for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++) {
+                int captured = BitBoard.neighbour(square, direction);
+                custodians[square * 4 + direction] = captured == BitBoard.NONE ? BitBoard.NONE
+                        : BitBoard.neighbour(captured, direction);
+            }
+        return custodians;
+    }
+
+    private static void initKingGuards(int square) {
+        boolean nearCitadel = false;
+        for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++)
+            nearCitadel |= BitBoard.neighbour(square, direction) == BitBoard.CITADEL;
+        if (square != BitBoard.CITADEL && !nearCitadel)
+            return;
+        for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++) {
+            int guard = BitBoard.neighbour(square, direction);
+            if (guard == BitBoard.CITADEL)
+                continue;
+            kingGuardsLo[square] |= BitBoard.low(guard);
+            kingGuardsHi[square] |= BitBoard.high(guard);
+        }
+    }
+
+    static int getCustodian(int square, int direction) {
+        return custodians[square * 4 + direction];
+    }
+
+    static boolean isKingCaptured(int king, int attacker, long blackLo, long blackHi) {
+        return (kingGuardsLo[king] & ~(blackLo | BitBoard.low(attacker))) == 0
+                && (kingGuardsHi[king] & ~(blackHi | BitBoard.high(attacker))) == 0;
+    }
+}
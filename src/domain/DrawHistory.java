@@ -0,0 +1,82 @@
+package domain;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Keys of the positions played since the last capture, indexed by ply. A history shares its array
+// with the one it was extended from: the first extension of a history appends in place, later
+// ones copy the prefix, so a line of play fills one array and only branches pay for a copy. Every
+// array is indexed by a hash table of its own, so a lookup costs the same at any history length.
+public final class DrawHistory {
+    public static final DrawHistory EMPTY = new DrawHistory(null, 0);
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final Keys keys;
+    private final int size;
+
+    private DrawHistory(Keys keys, int size) {
+        this.keys = keys;
+        this.size = size;
+    }
+
+    public DrawHistory add(long key) {
+        Keys target = keys;
+        if (target == null || size == target.keys.length || !target.used.compareAndSet(size, size + 1))
+            target = new Keys(keys, size);
+        target.add(size, key);
+        return new DrawHistory(target, size + 1);
+    }
+
+    public boolean contains(long key) {
+        return size > 0 && keys.contains(key, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Append-only: a slot of the table, once set, never changes, and the histories sharing the
+    // array only trust the entries below their own size, which were all written before them.
+    private static final class Keys {
+        final long[] keys;
+        // index + 1 of the key stored in the slot, zero for free slots
+        final int[] table;
+        final int mask;
+        final AtomicInteger used;
+
+        // Copy of the first size keys of the array, with room for the next one already claimed
+        Keys(Keys from, int size) {
+            int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(size) << 1);
+            this.keys = new long[capacity];
+            this.table = new int[capacity << 1];
+            this.mask = table.length - 1;
+            this.used = new AtomicInteger(size + 1);
+            for (int i = 0; i < size; i++)
+                add(i, from.keys[i]);
+        }
+
+        void add(int index, long key) {
+            keys[index] = key;
+            int slot = hash(key) & mask;
+            while (table[slot] != 0)
+                slot = (slot + 1) & mask;
+            table[slot] = index + 1;
+        }
+
+        boolean contains(long key, int size) {
+            int entry;
+            for (int slot = hash(key) & mask; (entry = table[slot]) != 0; slot = (slot + 1) & mask)
+                if (entry <= size && keys[entry - 1] == key)
+                    return true;
+            return false;
+        }
+
+        private static int hash(long key) {
+            return (int) (key ^ key >>> 32);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package domain;
+
+final class EscapeTables {
+    private static final int OCCUPANCIES = 1 << BitBoard.SIZE;
+
+    // [vertical][square * 512 + line occupancy] -> directions (as 1 << direction) along the line in which an
+    // escape square is reached before a pawn, a camp or the citadel. An occupied escape square still counts.
+    private static final byte[][] escapes = initEscapes();
+
+    private EscapeTables() {
+    }
+
+    private static byte[][] initEscapes() {
+        byte[][] escapes = new byte[2][BitBoard.SQUARES * OCCUPANCIES];
+        for (int square = 0; square < BitBoard.SQUARES; square++)
+            for (int occupancy = 0; occupancy < OCCUPANCIES; occupancy++) {
+                escapes[0][square * OCCUPANCIES + occupancy] = (byte) (initEscape(square, BitBoard.RIGHT, occupancy)
+                        | initEscape(square, BitBoard.LEFT, occupancy));
+                escapes[1][square * OCCUPANCIES + occupancy] = (byte) (initEscape(square, BitBoard.UP, occupancy)
+                        | initEscape(square, BitBoard.DOWN, occupancy));
+            }
+        return escapes;
+    }
+
+    private static int initEscape(int square, int direction, int occupancy) {
+        boolean vertical = BitBoard.isVertical(direction);
+        for (int s = BitBoard.neighbour(square, direction); s != BitBoard.NONE; s = BitBoard.neighbour(s, direction)) {
+            int line = vertical ? BitBoard.row(s) : BitBoard.column(s);
+            if (BitBoard.contains(BitBoard.ESCAPES, s))
+                return 1 << direction;
+            if ((occupancy & 1 << line) != 0 || BitBoard.contains(BitBoard.CAMPS, s) || s == BitBoard.CITADEL)
+                return 0;
+        }
+        return 0;
+    }
+
+    static int getEscapes(int square, boolean vertical, int occupancy) {
+        return escapes[vertical ? 1 : 0][square * OCCUPANCIES + occupancy];
+    }
+}
@@ -0,0 +1,135 @@
+package domain;
+
+import utils.IntArrayList;
+
+// Bounded threat search around the king. White only tries king moves that open escape lines and
+// black only tries moves next to the king that threaten to capture it. Every defence is checked,
+// so a move returned here forces the result within the given plies, though not every forced
+// result is found.
+final class KingTactics {
+    static final int MAX_PLIES = 7;
+
+    private static final ThreadLocal<IntArrayList[]> buffers = ThreadLocal.withInitial(KingTactics::initBuffers);
+
+    private KingTactics() {
+    }
+
+    private static IntArrayList[] initBuffers() {
+        IntArrayList[] lists = new IntArrayList[MAX_PLIES + 1];
+        for (int i = 0; i < lists.length; i++)
+            lists[i] = new IntArrayList(128);
+        return lists;
+    }
+
+    // White move that takes the king to an escape within plies, or Move.NONE
+    static int findEscape(TablutState state, int plies) {
+        return findEscape(state, Math.min(plies, MAX_PLIES), buffers.get());
+    }
+
+    // Black move that captures the king within plies, or Move.NONE
+    static int findKingCapture(TablutState state, int plies) {
+        return findKingCapture(state, Math.min(plies, MAX_PLIES), buffers.get());
+    }
+
+    private static int findEscape(TablutState state, int plies, IntArrayList[] lists) {
+        int escape = state.getEscapeMove();
+        if (escape != Move.NONE || plies < 3)
+            return escape;
+        IntArrayList candidates = lists[plies];
+        state.getKingMoves(candidates);
+        // the last threat must open two lines, since one black move closes at most one
+        int threats = plies == 3 ? 2 : 1;
+        for (int i = 0; i < candidates.size(); i++) {
+            int move = candidates.get(i);
+            if (state.getOpenEscapesAfter(move) < threats)
+                continue;
+            state.makeMove(move);
+            boolean forced = !state.isBlackWin() && !state.isDraw() && isEscapeForced(state, plies - 2, lists);
+            state.unmakeMove();
+            if (forced)
+                return move;
+        }
+        return Move.NONE;
+    }
+
+    // Only captures and moves onto the king's lines can close them. When white just has to escape
+    // next, the other replies can only stop it by repeating a position, so they are not played out.
+    private static boolean isEscapeForced(TablutState state, int plies, IntArrayList[] lists) {
+        IntArrayList replies = lists[plies + 1];
+        state.getLegalMoves(replies);
+        int king = state.getKingSquare();
+        for (int pass = 0; pass < 2; pass++)
+            for (int i = 0; i < replies.size(); i++) {
+                int reply = replies.get(i);
+                int to = Move.to(reply);
+                boolean defence = Move.isCapture(reply) || BitBoard.row(to) == BitBoard.row(king)
+                        || BitBoard.column(to) == BitBoard.column(king);
+                if (defence != (pass == 0))
+                    continue;
+                if (!defence && plies == 1) {
+                    if (state.isRepetition(reply))
+                        return false;
+                    continue;
+                }
+                state.makeMove(reply);
+                boolean escapes = !state.isBlackWin() && !state.isDraw() && findEscape(state, plies, lists) != Move.NONE;
+                state.unmakeMove();
+                if (!escapes)
+                    return false;
+            }
+        return true;
+    }
+
+    private static int findKingCapture(TablutState state, int plies, IntArrayList[] lists) {
+        int capture = state.getKingCaptureMove();
+        if (capture != Move.NONE || plies < 3)
+            return capture;
+        IntArrayList candidates = lists[plies];
+        state.getKingApproaches(candidates);
+        for (int i = 0; i < candidates.size(); i++) {
+            int move = candidates.get(i);
+            state.makeMove(move);
+            boolean forced = !state.isWhiteWin() && !state.isDraw() && state.getKingCaptureMove() != Move.NONE
+                    && isCaptureForced(state, plies - 2, lists);
+            state.unmakeMove();
+            if (forced)
+                return move;
+        }
+        return Move.NONE;
+    }
+
+    // White can only save the king by moving it, capturing, or standing on the lines black needs
+    // to reach the squares next to it; the other replies are treated like the ones above.
+    private static boolean isCaptureForced(TablutState state, int plies, IntArrayList[] lists) {
+        IntArrayList replies = lists[plies + 1];
+        state.getLegalMoves(replies);
+        int king = state.getKingSquare();
+        for (int pass = 0; pass < 3; pass++)
+            for (int i = 0; i < replies.size(); i++) {
+                int reply = replies.get(i);
+                if (getCaptureDefence(reply, king) != pass)
+                    continue;
+                if (pass == 2 && plies == 1) {
+                    if (state.isRepetition(reply))
+                        return false;
+                    continue;
+                }
+                state.makeMove(reply);
+                boolean captured = !state.isWhiteWin() && !state.isDraw() && findKingCapture(state, plies, lists) != Move.NONE;
+                state.unmakeMove();
+                if (!captured)
+                    return false;
+            }
+        return true;
+    }
+
+    // 0 for king moves, captures and moves next to the king, 1 for the other moves onto a row or
+    // column through a square next to the king, 2 for moves that cannot stop the capture
+    private static int getCaptureDefence(int reply, int king) {
+        int row = Math.abs(BitBoard.row(Move.to(reply)) - BitBoard.row(king));
+        int column = Math.abs(BitBoard.column(Move.to(reply)) - BitBoard.column(king));
+        if (Move.pawn(reply) == TablutState.KING || Move.isCapture(reply) || row + column == 1)
+            return 0;
+        return row <= 1 || column <= 1 ? 1 : 2;
+    }
+}
@@ -0,0 +1,62 @@
+package domain;
+
+public final class Move {
+    public static final int NONE = 0;
+
+    // bits 0-6: from square, bits 7-13: to square, bits 14-15: pawn type,
+    // bits 16-19: captured neighbours of the destination, one bit per direction (UP, RIGHT, DOWN, LEFT)
+    private static final int SQUARE_MASK = 0x7F;
+    private static final int TO_SHIFT = 7;
+    private static final int PAWN_SHIFT = 14;
+    private static final int PAWN_MASK = 0x3;
+    private static final int CAPTURES_SHIFT = 16;
+    private static final int CAPTURES_MASK = 0xF;
+
+    private Move() {
+    }
+
+    public static int encode(int from, int to, byte pawn, int captures) {
+        return from | to << TO_SHIFT | pawn << PAWN_SHIFT | captures << CAPTURES_SHIFT;
+    }
+
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int to(int move) {
+        return move >>> TO_SHIFT & SQUARE_MASK;
+    }
+
+    public static byte pawn(int move) {
+        return (byte) (move >>> PAWN_SHIFT & PAWN_MASK);
+    }
+
+    public static int captures(int move) {
+        return move >>> CAPTURES_SHIFT & CAPTURES_MASK;
+    }
+
+    public static boolean isCapture(int move) {
+        return captures(move) != 0;
+    }
+
+    public static boolean captures(int move, int direction) {
+        return (captures(move) & 1 << direction) != 0;
+    }
+
+    public static int capturedSquare(int move, int direction) {
+        return BitBoard.neighbour(to(move), direction);
+    }
+
+    public static int capturesNumber(int move) {
+        return Integer.bitCount(captures(move));
+    }
+
+    public static int direction(int move) {
+        return BitBoard.direction(from(move), to(move));
+    }
+
+    public static String toString(int move) {
+        return new Pawn(pawn(move), BitBoard.toCoordinates(from(move))) + "-> "
+                + BitBoard.toCoordinates(to(move)) + " captures: " + Integer.toBinaryString(captures(move));
+    }
+}
@@ -0,0 +1,20 @@
+package domain;
+
+import utils.IntArrayList;
+
+final class MoveBuffers {
+    private static final ThreadLocal<MoveBuffers> buffers = ThreadLocal.withInitial(MoveBuffers::new);
+
+    final IntArrayList moves = new IntArrayList(128);
+    final IntArrayList kingMoves = new IntArrayList(32);
+    final IntArrayList protection = new IntArrayList(BitBoard.SIZE);
+    final IntArrayList captures = new IntArrayList(32);
+    final long[] targets = new long[2];
+
+    private MoveBuffers() {
+    }
+
+    static MoveBuffers get() {
+        return buffers.get();
+    }
+}
@@ -0,0 +1,46 @@
+package domain;
+
+final class MoveTables {
+    private static final int FREE_MOVER = 0;
+    private static final int CAMP_MOVER = 1;
+    private static final int OCCUPANCIES = 1 << BitBoard.SIZE;
+
+    // [mover][direction][square * 512 + line occupancy] -> reachable squares of the line as a 9-bit mask.
+    // The occupancy of a row is indexed by column and the occupancy of a column by row.
+    private static final short[][][] rays = initRays();
+
+    private MoveTables() {
+    }
+
+    private static short[][][] initRays() {
+        short[][][] rays = new short[2][4][BitBoard.SQUARES * OCCUPANCIES];
+        for (int mover = FREE_MOVER; mover <= CAMP_MOVER; mover++)
+            for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++)
+                for (int square = 0; square < BitBoard.SQUARES; square++)
+                    for (int occupancy = 0; occupancy < OCCUPANCIES; occupancy++)
+                        rays[mover][direction][square * OCCUPANCIES + occupancy] =
+                            (short) initRay(mover, direction, square, occupancy);
+        return rays;
+    }
+
+    private static int initRay(int mover, int direction, int square, int occupancy) {
+        int dr = direction == BitBoard.UP ? -1 : direction == BitBoard.DOWN ? 1 : 0;
+        int dc = direction == BitBoard.LEFT ? -1 : direction == BitBoard.RIGHT ? 1 : 0;
+        int mask = 0;
+        for (int i = BitBoard.row(square) + dr, j = BitBoard.column(square) + dc;
+                i >= 0 && i < BitBoard.SIZE && j >= 0 && j < BitBoard.SIZE; i += dr, j += dc) {
+            int line = dr != 0 ? i : j;
+            int to = BitBoard.square(i, j);
+            if ((occupancy & 1 << line) != 0 || to == BitBoard.CITADEL)
+                break;
+            if (mover == FREE_MOVER && BitBoard.contains(BitBoard.CAMPS, to))
+                break;
+            mask |= 1 << line;
+        }
+        return mask;
+    }
+
+    static int getDestinations(int square, boolean campMover, int direction, int occupancy) {
+        return rays[campMover ? CAMP_MOVER : FREE_MOVER][direction][square * OCCUPANCIES + occupancy];
+    }
+}
@@ -0,0 +1,385 @@
+package domain;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import utils.IntArrayList;
+
+// Search graph kept in parallel arrays. Nodes are positions and hold the statistics; the moves of
+// an expanded node are a contiguous block of edges, each with its own visit count and the node it
+// leads to. Positions reached by different move orders share one node through a table keyed by
+// position, so the tree is a DAG. Allocation only bumps counters and reset releases everything.
+final class NodePool {
+    static final int NONE = -1;
+
+    private static final int NEW = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+    // table slot claimed by a thread that has not stored its node yet, or that found the pool full
+    private static final int PENDING = -2;
+    private static final int FULL = -3;
+    private static final int MAX_PROBES = 32;
+
+    private final int capacity;
+    private final int edgeCapacity;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger edgeSize = new AtomicInteger();
+    // set once an allocation fails, after which no node is expanded until the pool is freed
+    private volatile boolean full;
+
+    // zero for nodes that are not shared: terminal positions and the nodes of root parallel trees
+    private final long[] keys;
+    private final int[] firstEdges;
+    private final int[] edgeCounts;
+    // written by every search thread; utilities hold the bits of a double
+    private final AtomicIntegerArray expansions;
+    private final AtomicIntegerArray playouts;
+    private final AtomicIntegerArray virtualLosses;
+    private final AtomicLongArray utilities;
+
+    private final int[] edgeMoves;
+    private final int[] edgeChildren;
+    private final AtomicIntegerArray edgePlayouts;
+
+    private final int mask;
+    private final AtomicLongArray tableKeys;
+    private final AtomicIntegerArray tableNodes;
+
+    // new index of every kept node and edge, only allocated once a subtree is kept
+    private int[] relocations;
+    private int[] edgeRelocations;
+
+    NodePool(int capacity, int edgeCapacity) {
+        this.capacity = capacity;
+        this.edgeCapacity = edgeCapacity;
+        this.keys = new long[capacity];
+        this.firstEdges = new int[capacity];
+        this.edgeCounts = new int[capacity];
+        this.expansions = new AtomicIntegerArray(capacity);
+        this.playouts = new AtomicIntegerArray(capacity);
+        this.virtualLosses = new AtomicIntegerArray(capacity);
+        this.utilities = new AtomicLongArray(capacity);
+        this.edgeMoves = new int[edgeCapacity];
+        this.edgeChildren = new int[edgeCapacity];
+        this.edgePlayouts = new AtomicIntegerArray(edgeCapacity);
+        int slots = Integer.highestOneBit(capacity - 1) << 2;
+        this.mask = slots - 1;
+        this.tableKeys = new AtomicLongArray(slots);
+        this.tableNodes = new AtomicIntegerArray(slots);
+        clearTable();
+    }
+
+    void reset() {
+        size.set(0);
+        edgeSize.set(0);
+        full = false;
+        clearTable();
+    }
+
+    private void clearTable() {
+        for (int i = 0; i <= mask; i++) {
+            tableNodes.set(i, PENDING);
+            tableKeys.set(i, 0);
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    boolean isFull() {
+        return full;
+    }
+
+    // Whether the nodes and edges of an expansion with that many moves are sure to fit. Threads
+    // expanding at the same time can still run out of room halfway, but that marks the pool full.
+    boolean hasRoom(int moves) {
+        if (size.get() + moves > capacity || edgeSize.get() + moves > edgeCapacity)
+            full = true;
+        return !full;
+    }
+
+    int allocateRoot(long key) {
+        int node = key == 0 ? allocateNode(0) : getNode(key);
+        if (node == NONE)
+            throw new IllegalStateException("Node pool is full");
+        return node;
+    }
+
+    // Node of the position, created on first use, or NONE when the pool has no room left
+    int getNode(long key) {
+        int slot = (int) (key ^ key >>> 32) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & mask) {
+            long slotKey = tableKeys.get(slot);
+            if (slotKey == 0 && tableKeys.compareAndSet(slot, 0, key)) {
+                int node = allocateNode(key);
+                tableNodes.set(slot, node == NONE ? FULL : node);
+                return node;
+            }
+            if (slotKey == 0)
+                slotKey = tableKeys.get(slot);
+            if (slotKey == key) {
+                int node;
+                while ((node = tableNodes.get(slot)) == PENDING)
+                    Thread.yield();
+                return node == FULL ? allocateNode(0) : node;
+            }
+        }
+        // too many collisions: the position just is not shared
+        return allocateNode(0);
+    }
+
+    int find(long key) {
+        int slot = (int) (key ^ key >>> 32) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & mask) {
+            long slotKey = tableKeys.get(slot);
+            if (slotKey == 0)
+                return NONE;
+            if (slotKey == key) {
+                int node = tableNodes.get(slot);
+                return node < 0 ? NONE : node;
+            }
+        }
+        return NONE;
+    }
+
+    int allocateNode(long key) {
+        int node = reserve(size, capacity, 1);
+        if (node != NONE) {
+            keys[node] = key;
+            firstEdges[node] = NONE;
+            edgeCounts[node] = 0;
+            expansions.set(node, NEW);
+            playouts.set(node, 0);
+            virtualLosses.set(node, 0);
+            utilities.set(node, Double.doubleToLongBits(0));
+        }
+        return node;
+    }
+
+    // Allocates an edge for every move, or returns NONE when the pool has no room left
+    int allocateEdges(IntArrayList moves) {
+        int first = reserve(edgeSize, edgeCapacity, moves.size());
+        if (first != NONE)
+            for (int i = 0; i < moves.size(); i++) {
+                edgeMoves[first + i] = moves.get(i);
+                edgeChildren[first + i] = NONE;
+                edgePlayouts.set(first + i, 0);
+            }
+        return first;
+    }
+
+    private int reserve(AtomicInteger size, int capacity, int count) {
+        int first;
+        do {
+            first = size.get();
+            if (first + count > capacity) {
+                full = true;
+                return NONE;
+            }
+        } while (!size.compareAndSet(first, first + count));
+        return first;
+    }
+
+    // Claims the expansion of the node for the calling thread; only one thread ever gets true
+    boolean startExpansion(int node) {
+        return expansions.compareAndSet(node, NEW, EXPANDING);
+    }
+
+    void endExpansion(int node, int firstEdge, int edgeCount) {
+        firstEdges[node] = firstEdge;
+        edgeCounts[node] = edgeCount;
+        expansions.set(node, EXPANDED);
+    }
+
+    void abortExpansion(int node) {
+        expansions.set(node, NEW);
+    }
+
+    boolean isShared(int node) {
+        return keys[node] != 0;
+    }
+
+    boolean isExpanding(int node) {
+        return expansions.get(node) == EXPANDING;
+    }
+
+    boolean isExpanded(int node) {
+        return expansions.get(node) == EXPANDED;
+    }
+
+    // the expansion state is read first, so the edge block is visible once it says EXPANDED
+    boolean isLeaf(int node) {
+        return expansions.get(node) != EXPANDED || edgeCounts[node] == 0;
+    }
+
+    int getFirstEdge(int node) {
+        return firstEdges[node];
+    }
+
+    int getEdgeCount(int node) {
+        return edgeCounts[node];
+    }
+
+    int getEdge(int node, int move) {
+        int first = firstEdges[node];
+        for (int edge = first; edge < first + edgeCounts[node]; edge++)
+            if (edgeMoves[edge] == move)
+                return edge;
+        return NONE;
+    }
+
+    int getMove(int edge) {
+        return edgeMoves[edge];
+    }
+
+    int getChild(int edge) {
+        return edgeChildren[edge];
+    }
+
+    void setChild(int edge, int child) {
+        edgeChildren[edge] = child;
+    }
+
+    int getEdgePlayouts(int edge) {
+        return edgePlayouts.get(edge);
+    }
+
+    void addEdgePlayouts(int edge, int count) {
+        edgePlayouts.addAndGet(edge, count);
+    }
+
+    int getPlayouts(int node) {
+        return playouts.get(node);
+    }
+
+    double getUtility(int node) {
+        return Double.longBitsToDouble(utilities.get(node));
+    }
+
+    int getVirtualLosses(int node) {
+        return virtualLosses.get(node);
+    }
+
+    void updatePlayoutResults(int node, double utility) {
+        if (utility >= 0)
+            addPlayoutResults(node, utility, 1);
+    }
+
+    void addPlayoutResults(int node, double utility, int count) {
+        long bits;
+        do {
+            bits = utilities.get(node);
+        } while (!utilities.compareAndSet(node, bits, Double.doubleToLongBits(Double.longBitsToDouble(bits) + utility)));
+        playouts.addAndGet(node, count);
+    }
+
+    void addVirtualLoss(int node) {
+        virtualLosses.incrementAndGet(node);
+    }
+
+    void removeVirtualLoss(int node) {
+        virtualLosses.decrementAndGet(node);
+    }
+
+    // Moves the nodes and edges reachable from the node to the front of the pool and frees the
+    // rest, returning the new index of the node. Everything keeps its relative order, so nothing
+    // moves to an index above its old one and nothing is overwritten before it has been copied.
+    int retain(int tree) {
+        if (relocations == null) {
+            relocations = new int[capacity];
+            edgeRelocations = new int[edgeCapacity];
+        }
+        int nodes = size.get();
+        int edges = edgeSize.get();
+        for (int node = 0; node < nodes; node++)
+            relocations[node] = NONE;
+        for (int edge = 0; edge < edges; edge++)
+            edgeRelocations[edge] = NONE;
+
+        IntArrayList stack = new IntArrayList();
+        relocations[tree] = 0;
+        stack.add(tree);
+        while (!stack.isEmpty()) {
+            int node = stack.removeLast();
+            if (isLeaf(node))
+                continue;
+            for (int edge = firstEdges[node]; edge < firstEdges[node] + edgeCounts[node]; edge++) {
+                edgeRelocations[edge] = 0;
+                int child = edgeChildren[edge];
+                if (child != NONE && relocations[child] == NONE) {
+                    relocations[child] = 0;
+                    stack.add(child);
+                }
+            }
+        }
+        int keptNodes = 0;
+        for (int node = 0; node < nodes; node++)
+            if (relocations[node] != NONE)
+                relocations[node] = keptNodes++;
+        int keptEdges = 0;
+        for (int edge = 0; edge < edges; edge++)
+            if (edgeRelocations[edge] != NONE)
+                edgeRelocations[edge] = keptEdges++;
+
+        for (int node = 0; node < nodes; node++) {
+            int to = relocations[node];
+            if (to == NONE)
+                continue;
+            keys[to] = keys[node];
+            firstEdges[to] = isLeaf(node) ? NONE : edgeRelocations[firstEdges[node]];
+            edgeCounts[to] = edgeCounts[node];
+            expansions.set(to, expansions.get(node));
+            playouts.set(to, playouts.get(node));
+            virtualLosses.set(to, 0);
+            utilities.set(to, utilities.get(node));
+        }
+        for (int edge = 0; edge < edges; edge++) {
+            int to = edgeRelocations[edge];
+            if (to == NONE)
+                continue;
+            edgeMoves[to] = edgeMoves[edge];
+            edgeChildren[to] = edgeChildren[edge] == NONE ? NONE : relocations[edgeChildren[edge]];
+            edgePlayouts.set(to, edgePlayouts.get(edge));
+        }
+        size.set(keptNodes);
+        edgeSize.set(keptEdges);
+        full = false;
+
+        clearTable();
+        for (int node = 0; node < keptNodes; node++)
+            if (keys[node] != 0)
+                insert(keys[node], node);
+        return relocations[tree];
+    }
+
+    private void insert(long key, int node) {
+        int slot = (int) (key ^ key >>> 32) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & mask)
+            if (tableKeys.get(slot) == 0) {
+                tableKeys.set(slot, key);
+                tableNodes.set(slot, node);
+                return;
+            }
+        keys[node] = 0;
+    }
+
+    // Adds the statistics of a tree grown independently from the same position, matching edges by move
+    void merge(int root, int other) {
+        addPlayoutResults(root, getUtility(other), getPlayouts(other));
+        if (isLeaf(other))
+            return;
+        for (int edge = firstEdges[other]; edge < firstEdges[other] + edgeCounts[other]; edge++) {
+            int match = getEdge(root, edgeMoves[edge]);
+            if (match == NONE || edgeChildren[edge] == NONE || edgeChildren[match] == NONE)
+                continue;
+            addEdgePlayouts(match, getEdgePlayouts(edge));
+            addPlayoutResults(edgeChildren[match], getUtility(edgeChildren[edge]), getPlayouts(edgeChildren[edge]));
+        }
+    }
+}
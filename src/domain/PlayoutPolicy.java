@@ -0,0 +1,7 @@
+package domain;
+
+public enum PlayoutPolicy {
+    HEAVY,
+    LIGHT,
+    HYBRID;
+}
@@ -0,0 +1,223 @@
+package domain;
+
+import utils.IntArrayList;
+
+// Depth-first proof-number search proving a win for the side to move at the root. Proof and
+// disproof numbers are kept in a table of its own, indexed by position key. Draws and the depth
+// limit count as disproofs, so they never make a proof. Both depend on the path, which the table
+// does not know about, so it is cleared for every search and the proof of the move returned is
+// walked again along the actual history before it is trusted.
+public class ProofNumberSearch {
+    private static final int INFINITY = 1 << 28;
+    private static final int TABLE_BITS = 20;
+    private static final int MAX_DEPTH = 48;
+
+    private final long[] keys;
+    private final int[] proofs;
+    private final int[] disproofs;
+    private final int mask;
+
+    private final IntArrayList[] moves = new IntArrayList[MAX_DEPTH + 1];
+    private final long[][] childKeys = new long[MAX_DEPTH + 1][];
+    // proof and disproof numbers of terminal children, packed as proof << 32 | disproof, or -1
+    private final long[][] childResults = new long[MAX_DEPTH + 1][];
+
+    private byte attacker;
+    private long deadline;
+    private long nodes;
+    private boolean aborted;
+
+    public ProofNumberSearch() {
+        this(TABLE_BITS);
+    }
+
+    public ProofNumberSearch(int tableBits) {
+        this.keys = new long[1 << tableBits];
+        this.proofs = new int[1 << tableBits];
+        this.disproofs = new int[1 << tableBits];
+        this.mask = (1 << tableBits) - 1;
+        for (int depth = 0; depth <= MAX_DEPTH; depth++) {
+            moves[depth] = new IntArrayList(128);
+            childKeys[depth] = new long[128];
+            childResults[depth] = new long[128];
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = 0;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    // Proven winning move for the side to move, or Move.NONE if none is found before the deadline
+    public int solve(TablutState state, long deadline) {
+        if (state.isWhiteWin() || state.isBlackWin() || state.isDraw())
+            return Move.NONE;
+        state = state.clone();
+        clear();
+        this.attacker = state.getPlayerTurn();
+        this.deadline = deadline;
+        this.nodes = 0;
+        this.aborted = false;
+        search(state, INFINITY, INFINITY, 0);
+        int entry = find(state.getKey());
+        if (entry < 0 || proofs[entry] != 0)
+            return Move.NONE;
+
+        IntArrayList rootMoves = moves[0];
+        state.getLegalMoves(rootMoves);
+        for (int i = 0; i < rootMoves.size(); i++) {
+            int move = rootMoves.get(i);
+            state.makeMove(move);
+            boolean proven = getWinner(state) == attacker || isProven(state, 1);
+            state.unmakeMove();
+            if (proven)
+                return move;
+            if (aborted)
+                break;
+        }
+        return Move.NONE;
+    }
+
+    // Whether the table proves the position with the draws that are open on the path played so
+    // far: some attacker move and every defender reply must lead to a win or to a proven position.
+    private boolean isProven(TablutState state, int depth) {
+        byte winner = getWinner(state);
+        if (winner != TablutState.EMPTY)
+            return winner == attacker;
+        if (state.isDraw() || depth > MAX_DEPTH || aborted)
+            return false;
+        nodes++;
+        if (System.currentTimeMillis() > deadline) {
+            aborted = true;
+            return false;
+        }
+        int entry = find(state.getKey());
+        if (entry < 0 || proofs[entry] != 0)
+            return false;
+        boolean attacking = state.getPlayerTurn() == attacker;
+        IntArrayList children = moves[depth];
+        state.getLegalMoves(children);
+        if (children.isEmpty())
+            return !attacking;
+        for (int i = 0; i < children.size(); i++) {
+            state.makeMove(children.get(i));
+            boolean proven = isProven(state, depth + 1);
+            state.unmakeMove();
+            if (proven == attacking)
+                return proven;
+        }
+        return !attacking;
+    }
+
+    private void search(TablutState state, int proofThreshold, int disproofThreshold, int depth) {
+        long key = state.getKey();
+        nodes++;
+        // every node makes and unmakes all its children, so the clock is cheap next to it
+        if (aborted || System.currentTimeMillis() > deadline) {
+            aborted = true;
+            return;
+        }
+        boolean attacking = state.getPlayerTurn() == attacker;
+        IntArrayList children = moves[depth];
+        state.getLegalMoves(children);
+        if (children.isEmpty() || depth == MAX_DEPTH) {
+            // the side to move has lost, or the line is too long to prove anything
+            boolean proven = children.isEmpty() && !attacking;
+            store(key, proven ? 0 : INFINITY, proven ? INFINITY : 0);
+            return;
+        }
+        initChildren(state, children, depth);
+
+        while (true) {
+            int proof = attacking ? INFINITY : 0;
+            int disproof = attacking ? 0 : INFINITY;
+            int best = -1;
+            int bestValue = INFINITY;
+            int secondValue = INFINITY;
+            int bestProof = 0;
+            int bestDisproof = 0;
+            for (int i = 0; i < children.size(); i++) {
+                long result = childResults[depth][i];
+                int entry = result < 0 ? find(childKeys[depth][i]) : -1;
+                int childProof = result >= 0 ? (int) (result >>> 32) : entry >= 0 ? proofs[entry] : 1;
+                int childDisproof = result >= 0 ? (int) result : entry >= 0 ? disproofs[entry] : 1;
+                int value = attacking ? childProof : childDisproof;
+                if (attacking) {
+                    proof = Math.min(proof, childProof);
+                    disproof = Math.min(INFINITY, disproof + childDisproof);
+                } else {
+                    proof = Math.min(INFINITY, proof + childProof);
+                    disproof = Math.min(disproof, childDisproof);
+                }
+                if (result < 0 && value < bestValue) {
+                    secondValue = bestValue;
+                    bestValue = value;
+                    best = i;
+                    bestProof = childProof;
+                    bestDisproof = childDisproof;
+                } else if (result < 0 && value < secondValue) {
+                    secondValue = value;
+                }
+            }
+            store(key, proof, disproof);
+            if (proof >= proofThreshold || disproof >= disproofThreshold || proof == 0 || disproof == 0
+                    || best < 0 || aborted)
+                return;
+            int childProofThreshold;
+            int childDisproofThreshold;
+            if (attacking) {
+                childProofThreshold = Math.min(proofThreshold, secondValue + 1);
+                childDisproofThreshold = disproofThreshold - disproof + bestDisproof;
+            } else {
+                childProofThreshold = proofThreshold - proof + bestProof;
+                childDisproofThreshold = Math.min(disproofThreshold, secondValue + 1);
+            }
+            state.makeMove(children.get(best));
+            search(state, childProofThreshold, childDisproofThreshold, depth + 1);
+            state.unmakeMove();
+        }
+    }
+
+    private void initChildren(TablutState state, IntArrayList children, int depth) {
+        if (childKeys[depth].length < children.size()) {
+            childKeys[depth] = new long[children.size()];
+            childResults[depth] = new long[children.size()];
+        }
+        for (int i = 0; i < children.size(); i++) {
+            state.makeMove(children.get(i));
+            byte winner = getWinner(state);
+            childKeys[depth][i] = state.getKey();
+            if (winner == attacker)
+                childResults[depth][i] = (long) 0 << 32 | INFINITY;
+            else if (winner != TablutState.EMPTY || state.isDraw())
+                childResults[depth][i] = (long) INFINITY << 32;
+            else
+                childResults[depth][i] = -1;
+            state.unmakeMove();
+        }
+    }
+
+    private static byte getWinner(TablutState state) {
+        if (state.isWhiteWin())
+            return TablutState.WHITE;
+        if (state.isBlackWin())
+            return TablutState.BLACK;
+        return TablutState.EMPTY;
+    }
+
+    private int find(long key) {
+        int index = (int) key & mask;
+        return keys[index] == key ? index : -1;
+    }
+
+    private void store(long key, int proof, int disproof) {
+        int index = (int) key & mask;
+        keys[index] = key;
+        proofs[index] = proof;
+        disproofs[index] = disproof;
+    }
+}
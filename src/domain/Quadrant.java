@@ -24,8 +24,12 @@ public class Quadrant implements BoardSet{
     }
     
     public boolean contains(Coordinates coord) {
-        int r = coord.row - 4;
-        int c = coord.column - 4;
+        return contains(coord.row, coord.column);
+    }
+
+    public boolean contains(int row, int column) {
+        int r = row - 4;
+        int c = column - 4;
         switch(this.quadrantNumber) {
             case FIRST:
                 return r <= 0 && c >= 0;
@@ -40,10 +44,14 @@ public class Quadrant implements BoardSet{
     }
     
     public static Quadrant getQuadrant(Coordinates coordinates) {
-        if(coordinates.row == 4 || coordinates.column == 4)
+        return getQuadrant(coordinates.row, coordinates.column);
+    }
+
+    public static Quadrant getQuadrant(int row, int column) {
+        if(row == 4 || column == 4)
             return null;
         for(Quadrant q : quadrants) 
-            if(q.contains(coordinates))
+            if(q.contains(row, column))
                 return q;
         return null;
     }
@@ -27,8 +27,12 @@ public class Side implements BoardSet{
     }
 
 	public static Side getSideFromMiddle(Coordinates coord) {
-        int r = coord.row - 4;
-        int c = coord.column - 4;
+        return getSideFromMiddle(coord.row, coord.column);
+    }
+
+	public static Side getSideFromMiddle(int row, int column) {
+        int r = row - 4;
+        int c = column - 4;
         if(r == 0) {
             if(c > 0)
                 return sides[RIGHT];
@@ -45,8 +49,12 @@ public class Side implements BoardSet{
     }
 
     public boolean contains(Coordinates coord) {
-        int r = coord.row - 4;
-        int c = coord.column - 4;
+        return contains(coord.row, coord.column);
+    }
+
+    public boolean contains(int row, int column) {
+        int r = row - 4;
+        int c = column - 4;
         switch(sideType) {
             case UP:
                 return r <= 0;
@@ -0,0 +1,131 @@
+package domain;
+
+public final class Symmetry {
+    public static final int IDENTITY = 0;
+    public static final int ROTATE_90 = 1;
+    public static final int ROTATE_180 = 2;
+    public static final int ROTATE_270 = 3;
+    public static final int MIRROR_COLUMNS = 4;
+    public static final int MIRROR_ROWS = 5;
+    public static final int TRANSPOSE = 6;
+    public static final int ANTI_TRANSPOSE = 7;
+    public static final int TRANSFORMS = 8;
+
+    private static final int LAST = BitBoard.SIZE - 1;
+
+    // [transform][square] -> image of the square, [transform][direction] -> image of the direction
+    private static final int[][] squares = initSquares();
+    private static final int[][] directions = initDirections();
+    private static final int[] inverses = initInverses();
+
+    private Symmetry() {
+    }
+
+    private static int[][] initSquares() {
+        int[][] squares = new int[TRANSFORMS][BitBoard.SQUARES];
+        for (int transform = 0; transform < TRANSFORMS; transform++)
+            for (int square = 0; square < BitBoard.SQUARES; square++)
+                squares[transform][square] = initSquare(transform, BitBoard.row(square), BitBoard.column(square));
+        return squares;
+    }
+
+    private static int initSquare(int transform, int r, int c) {
+        switch (transform) {
+            case ROTATE_90:
+                return BitBoard.square(c, LAST - r);
+            case ROTATE_180:
+                return BitBoard.square(LAST - r, LAST - c);
+            case ROTATE_270:
+                return BitBoard.square(LAST - c, r);
+            case MIRROR_COLUMNS:
+                return BitBoard.square(r, LAST - c);
+            case MIRROR_ROWS:
+                return BitBoard.square(LAST - r, c);
+            case TRANSPOSE:
+                return BitBoard.square(c, r);
+            case ANTI_TRANSPOSE:
+                return BitBoard.square(LAST - c, LAST - r);
+        }
+        return BitBoard.square(r, c);
+    }
+
+    private static int[][] initDirections() {
+        int[][] directions = new int[TRANSFORMS][4];
+        for (int transform = 0; transform < TRANSFORMS; transform++)
+            for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++)
+                directions[transform][direction] = BitBoard.direction(squares[transform][BitBoard.CITADEL],
+                        squares[transform][BitBoard.neighbour(BitBoard.CITADEL, direction)]);
+        return directions;
+    }
+
+    private static int[] initInverses() {
+        int[] inverses = new int[TRANSFORMS];
+        for (int transform = 0; transform < TRANSFORMS; transform++)
+            for (int inverse = 0; inverse < TRANSFORMS; inverse++)
+                if (squares[inverse][squares[transform][1]] == 1 && squares[inverse][squares[transform][BitBoard.SIZE]] == BitBoard.SIZE)
+                    inverses[transform] = inverse;
+        return inverses;
+    }
+
+    public static int transform(int transform, int square) {
+        return squares[transform][square];
+    }
+
+    public static int transformDirection(int transform, int direction) {
+        return directions[transform][direction];
+    }
+
+    public static int inverse(int transform) {
+        return inverses[transform];
+    }
+
+    public static int transformMove(int transform, int move) {
+        int captures = 0;
+        for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++)
+            if (Move.captures(move, direction))
+                captures |= 1 << directions[transform][direction];
+        return Move.encode(squares[transform][Move.from(move)], squares[transform][Move.to(move)], Move.pawn(move), captures);
+    }
+
+    public static TablutAction transformAction(int transform, TablutAction action) {
+        TablutAction result = new TablutAction(transform(transform, action.coordinates),
+                new Pawn(action.pawn.getPawnType(), transform(transform, action.pawn.position)));
+        for (Capture capture : action.getCaptured())
+            result.addCapture(new Capture(new Pawn(capture.getCaptured().getPawnType(),
+                    transform(transform, capture.getCaptured().position))));
+        return result;
+    }
+
+    private static Coordinates transform(int transform, Coordinates c) {
+        return BitBoard.toCoordinates(squares[transform][BitBoard.square(c)]);
+    }
+
+    public static long getKey(TablutState state, int transform) {
+        long key = Zobrist.turn(state.getPlayerTurn());
+        long lo = state.getOccupiedLo();
+        long hi = state.getOccupiedHi();
+        for (int square = BitBoard.first(lo, hi); square != BitBoard.NONE; square = BitBoard.next(lo, hi, square))
+            key ^= Zobrist.pawn(state.getPawn(square), squares[transform][square]);
+        return key;
+    }
+
+    public static int getCanonicalTransform(TablutState state) {
+        long[] keys = new long[TRANSFORMS];
+        long lo = state.getOccupiedLo();
+        long hi = state.getOccupiedHi();
+        for (int square = BitBoard.first(lo, hi); square != BitBoard.NONE; square = BitBoard.next(lo, hi, square)) {
+            byte pawn = state.getPawn(square);
+            for (int transform = 0; transform < TRANSFORMS; transform++)
+                keys[transform] ^= Zobrist.pawn(pawn, squares[transform][square]);
+        }
+        int canonical = IDENTITY;
+        for (int transform = 1; transform < TRANSFORMS; transform++)
+            if (keys[transform] < keys[canonical])
+                canonical = transform;
+        return canonical;
+    }
+
+    public static long getCanonicalKey(TablutState state) {
+        return getKey(state, getCanonicalTransform(state));
+    }
+}
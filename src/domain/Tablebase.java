@@ -0,0 +1,186 @@
+package domain;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import utils.IntArrayList;
+
+public final class Tablebase {
+    public static final String DEFAULT_PATH = "tablebase.bin";
+
+    static final int MAGIC = 0x54424C31;
+    static final int HEADER_BYTES = 12;
+
+    // Entries hold the result for the side to move in the top two bits and the distance to it in
+    // plies below them. Zero is a draw: nobody can force a result.
+    public static final int NOT_FOUND = -1;
+    public static final int DRAW = 0;
+    public static final int WIN = 0x40;
+    public static final int LOSS = 0x80;
+    static final int ILLEGAL = 0xC0;
+    static final int RESULT_MASK = 0xC0;
+    static final int DISTANCE_MASK = 0x3F;
+
+    static final int[] KING_SQUARES = squares(true, true);
+    static final int[] WHITE_SQUARES = squares(false, false);
+    static final int[] BLACK_SQUARES = squares(false, true);
+    private static final int[] kingIndexes = indexes(KING_SQUARES);
+    private static final int[] whiteIndexes = indexes(WHITE_SQUARES);
+    private static final int[] blackIndexes = indexes(BLACK_SQUARES);
+    private static final long[][] binomials = initBinomials();
+
+    private final int whitePawns;
+    private final int blackPawns;
+    private final ByteBuffer[][] tables;
+
+    Tablebase(int whitePawns, int blackPawns, ByteBuffer[][] tables) {
+        this.whitePawns = whitePawns;
+        this.blackPawns = blackPawns;
+        this.tables = tables;
+    }
+
+    public static Tablebase load(String path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r"); FileChannel channel = file.getChannel()) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a tablebase file: " + path);
+            int whitePawns = header.getInt();
+            int blackPawns = header.getInt();
+            ByteBuffer[][] tables = new ByteBuffer[whitePawns + 1][blackPawns + 1];
+            long offset = HEADER_BYTES;
+            for (int w = 0; w <= whitePawns; w++)
+                for (int b = 0; b <= blackPawns; b++) {
+                    long size = getSize(w, b);
+                    MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+                    tables[w][b] = table;
+                    offset += size;
+                }
+            if (offset != channel.size())
+                throw new IOException("Truncated tablebase file: " + path);
+            return new Tablebase(whitePawns, blackPawns, tables);
+        }
+    }
+
+    private static int[] squares(boolean king, boolean black) {
+        IntArrayList squares = new IntArrayList(BitBoard.SQUARES);
+        for (int square = 0; square < BitBoard.SQUARES; square++) {
+            boolean camp = BitBoard.contains(BitBoard.CAMPS, square);
+            if (king ? !camp : black ? square != BitBoard.CITADEL : !camp && square != BitBoard.CITADEL)
+                squares.add(square);
+        }
+        return squares.toArray();
+    }
+
+    private static int[] indexes(int[] squares) {
+        int[] indexes = new int[BitBoard.SQUARES];
+        for (int i = 0; i < indexes.length; i++)
+            indexes[i] = BitBoard.NONE;
+        for (int i = 0; i < squares.length; i++)
+            indexes[squares[i]] = i;
+        return indexes;
+    }
+
+    private static long[][] initBinomials() {
+        long[][] binomials = new long[BitBoard.SQUARES + 1][TablutState.BLACK_PAWNS + 1];
+        for (int n = 0; n <= BitBoard.SQUARES; n++) {
+            binomials[n][0] = 1;
+            for (int k = 1; k <= TablutState.BLACK_PAWNS && k <= n; k++)
+                binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k];
+        }
+        return binomials;
+    }
+
+    static long binomial(int n, int k) {
+        return k > n ? 0 : binomials[n][k];
+    }
+
+    static long getSize(int whitePawns, int blackPawns) {
+        return 2L * KING_SQUARES.length * binomial(WHITE_SQUARES.length, whitePawns)
+                * binomial(BLACK_SQUARES.length, blackPawns);
+    }
+
+    static long getIndex(TablutState state) {
+        int king = state.getKingSquare();
+        long whiteLo = state.getWhiteLo() & ~BitBoard.low(king);
+        long whiteHi = state.getWhiteHi() & ~BitBoard.high(king);
+        int whitePawns = BitBoard.count(whiteLo, whiteHi);
+        int blackPawns = BitBoard.count(state.getBlackLo(), state.getBlackHi());
+        long index = state.getPlayerTurn() == TablutState.BLACK ? 1 : 0;
+        index = index * KING_SQUARES.length + kingIndexes[king];
+        index = index * binomial(WHITE_SQUARES.length, whitePawns) + getRank(whiteLo, whiteHi, whiteIndexes);
+        return index * binomial(BLACK_SQUARES.length, blackPawns)
+                + getRank(state.getBlackLo(), state.getBlackHi(), blackIndexes);
+    }
+
+    // colexicographic rank of the set among all sets of the same size
+    private static long getRank(long lo, long hi, int[] indexes) {
+        long rank = 0;
+        int k = 0;
+        for (int square = BitBoard.first(lo, hi); square != BitBoard.NONE; square = BitBoard.next(lo, hi, square))
+            rank += binomial(indexes[square], ++k);
+        return rank;
+    }
+
+    // inverse of getRank, writing the squares of the set in increasing order
+    static void unrank(long rank, int k, int[] squares, int[] result) {
+        int n = squares.length;
+        for (int i = k; i > 0; i--) {
+            n--;
+            while (binomial(n, i) > rank)
+                n--;
+            rank -= binomial(n, i);
+            result[i - 1] = squares[n];
+        }
+    }
+
+    public boolean isCovered(TablutState state) {
+        if (state.isWhiteWin() || state.isBlackWin() || state.isDraw() || state.isFirstMove())
+            return false;
+        return state.getWhitePawns() - 1 <= whitePawns && state.getBlackPawns() <= blackPawns;
+    }
+
+    public int probe(TablutState state) {
+        if (!isCovered(state))
+            return NOT_FOUND;
+        int w = state.getWhitePawns() - 1;
+        int b = state.getBlackPawns();
+        return tables[w][b].get((int) getIndex(state)) & 0xFF;
+    }
+
+    public static int getResult(int value) {
+        return value & RESULT_MASK;
+    }
+
+    public static int getDistance(int value) {
+        return value & DISTANCE_MASK;
+    }
+
+    // Tablebase-correct move: the fastest win, the slowest loss, or a move that keeps the draw
+    public int getBestMove(TablutState state) {
+        int value = probe(state);
+        if (value == NOT_FOUND)
+            return Move.NONE;
+        IntArrayList moves = new IntArrayList(128);
+        state.getLegalMoves(moves);
+        int bestMove = Move.NONE;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            state.makeMove(move);
+            int child = state.isWhiteWin() || state.isBlackWin() ? LOSS : state.isDraw() ? DRAW : probe(state);
+            state.unmakeMove();
+            if (child == NOT_FOUND)
+                continue;
+            int score = getResult(child) == LOSS ? 2 * DISTANCE_MASK + 2 - getDistance(child)
+                    : getResult(child) == WIN ? getDistance(child) : DISTANCE_MASK + 1;
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+        }
+        return bestMove;
+    }
+}
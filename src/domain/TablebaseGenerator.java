@@ -0,0 +1,194 @@
+package domain;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import utils.IntArrayList;
+
+// Retrograde solver for the positions with the king, up to whitePawns white and blackPawns black
+// pawns. Each sweep resolves the positions whose result is exactly one ply further than the ones
+// known so far, so entries only ever read distances settled by earlier sweeps and the threads of a
+// sweep never depend on each other's writes.
+public class TablebaseGenerator {
+    private static final int BLOCK_SIZE = 1 << 14;
+
+    private final int whitePawns;
+    private final int blackPawns;
+    private final int threads;
+    private final byte[][][] tables;
+
+    public TablebaseGenerator(int whitePawns, int blackPawns, int threads) {
+        for (int w = 0; w <= whitePawns; w++)
+            for (int b = 0; b <= blackPawns; b++)
+                if (Tablebase.getSize(w, b) > Integer.MAX_VALUE - 8)
+                    throw new IllegalArgumentException("Table for " + w + " white and " + b + " black pawns is too large");
+        this.whitePawns = whitePawns;
+        this.blackPawns = blackPawns;
+        this.threads = threads;
+        this.tables = new byte[whitePawns + 1][blackPawns + 1][];
+    }
+
+    public void generate() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int w = 0; w <= whitePawns; w++)
+                for (int b = 0; b <= blackPawns; b++)
+                    generate(executor, w, b);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void write(String path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(whitePawns);
+            out.writeInt(blackPawns);
+            for (int w = 0; w <= whitePawns; w++)
+                for (int b = 0; b <= blackPawns; b++)
+                    out.write(tables[w][b]);
+        }
+    }
+
+    // reader over the tables generated so far, used to look up positions after a capture
+    private Tablebase getTablebase() {
+        ByteBuffer[][] buffers = new ByteBuffer[whitePawns + 1][blackPawns + 1];
+        for (int w = 0; w <= whitePawns; w++)
+            for (int b = 0; b <= blackPawns; b++)
+                if (tables[w][b] != null)
+                    buffers[w][b] = ByteBuffer.wrap(tables[w][b]);
+        return new Tablebase(whitePawns, blackPawns, buffers);
+    }
+
+    private void generate(ExecutorService executor, int w, int b) throws InterruptedException, ExecutionException {
+        byte[] table = new byte[(int) Tablebase.getSize(w, b)];
+        tables[w][b] = table;
+        Tablebase tablebase = getTablebase();
+        long start = System.currentTimeMillis();
+        int resolved = 0;
+        // results from smaller tables can settle a position long after this table stops changing
+        int maxDistance = 0;
+        for (int ww = 0; ww <= w; ww++)
+            for (int bb = 0; bb <= b; bb++)
+                if (ww != w || bb != b)
+                    maxDistance = Math.max(maxDistance, getMaxDistance(tables[ww][bb]));
+        for (int distance = 0;; distance++) {
+            if (distance > Tablebase.DISTANCE_MASK)
+                throw new IllegalStateException("Distance to result does not fit in a table entry");
+            int changed = sweep(executor, tablebase, table, w, b, distance);
+            resolved += changed;
+            if (changed == 0 && distance > maxDistance)
+                break;
+        }
+        System.out.println(w + " white " + b + " black: " + table.length + " entries, " + resolved + " resolved in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static int getMaxDistance(byte[] table) {
+        int max = 0;
+        for (byte entry : table) {
+            int value = entry & 0xFF;
+            if (Tablebase.getResult(value) == Tablebase.WIN || Tablebase.getResult(value) == Tablebase.LOSS)
+                max = Math.max(max, Tablebase.getDistance(value));
+        }
+        return max;
+    }
+
+    private int sweep(ExecutorService executor, Tablebase tablebase, byte[] table, int w, int b, int distance)
+            throws InterruptedException, ExecutionException {
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int from = 0; from < table.length; from += BLOCK_SIZE) {
+            int blockFrom = from;
+            int blockTo = Math.min(table.length, from + BLOCK_SIZE);
+            results.add(executor.submit(() -> sweep(tablebase, table, w, b, distance, blockFrom, blockTo)));
+        }
+        int changed = 0;
+        for (Future<Integer> result : results)
+            changed += result.get();
+        return changed;
+    }
+
+    private static int sweep(Tablebase tablebase, byte[] table, int w, int b, int distance, int from, int to) {
+        TablutState state = new TablutState(TablutState.WHITE);
+        IntArrayList moves = new IntArrayList(128);
+        int[] whites = new int[w];
+        int[] blacks = new int[b];
+        long blackSets = Tablebase.binomial(Tablebase.BLACK_SQUARES.length, b);
+        long whiteSets = Tablebase.binomial(Tablebase.WHITE_SQUARES.length, w);
+        int changed = 0;
+        for (int index = from; index < to; index++) {
+            int entry = table[index] & 0xFF;
+            if (entry != Tablebase.DRAW)
+                continue;
+            long rest = index / blackSets;
+            Tablebase.unrank(index % blackSets, b, Tablebase.BLACK_SQUARES, blacks);
+            Tablebase.unrank(rest % whiteSets, w, Tablebase.WHITE_SQUARES, whites);
+            rest /= whiteSets;
+            int king = Tablebase.KING_SQUARES[(int) (rest % Tablebase.KING_SQUARES.length)];
+            byte turn = rest / Tablebase.KING_SQUARES.length == 0 ? TablutState.WHITE : TablutState.BLACK;
+            if (distance == 0 && !isLegal(king, whites, blacks)) {
+                table[index] = (byte) Tablebase.ILLEGAL;
+                continue;
+            }
+            state.setPosition(turn, king, whites, w, blacks, b);
+            if (state.isWhiteWin()) {
+                table[index] = (byte) Tablebase.ILLEGAL;
+                continue;
+            }
+            int value = solve(tablebase, state, moves, distance);
+            if (value != Tablebase.DRAW) {
+                table[index] = (byte) value;
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean isLegal(int king, int[] whites, int[] blacks) {
+        for (int black : blacks) {
+            if (black == king)
+                return false;
+            for (int white : whites)
+                if (white == black)
+                    return false;
+        }
+        for (int white : whites)
+            if (white == king)
+                return false;
+        return true;
+    }
+
+    // Result at exactly the given distance for the side to move, or DRAW while still unknown
+    private static int solve(Tablebase tablebase, TablutState state, IntArrayList moves, int distance) {
+        state.getLegalMoves(moves);
+        if (moves.isEmpty())
+            return distance == 0 ? Tablebase.LOSS : Tablebase.DRAW;
+        if (distance == 0)
+            return Tablebase.DRAW;
+        boolean loss = true;
+        int longest = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            state.makeMove(moves.get(i));
+            int child = state.isWhiteWin() || state.isBlackWin() ? Tablebase.LOSS : tablebase.probe(state);
+            state.unmakeMove();
+            int result = Tablebase.getResult(child);
+            int childDistance = Tablebase.getDistance(child);
+            if (result == Tablebase.LOSS && childDistance == distance - 1)
+                return Tablebase.WIN | distance;
+            if (result != Tablebase.WIN || childDistance >= distance)
+                loss = false;
+            else
+                longest = Math.max(longest, childDistance);
+        }
+        return loss && longest == distance - 1 ? Tablebase.LOSS | distance : Tablebase.DRAW;
+    }
+}
@@ -0,0 +1,121 @@
+package domain;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import utils.IntArrayList;
+
+public final class TablutCodec {
+    // header byte, then 2 bits per square: squares 0-31 and 32-63 in two longs, squares 64-80 in 5 bytes
+    public static final int POSITION_BYTES = 22;
+    public static final int KEYED_POSITION_BYTES = POSITION_BYTES + Long.BYTES;
+    public static final int MOVE_BYTES = Short.BYTES;
+
+    private static final int BLACK_TURN = 1;
+    private static final int WHITE_WIN = 1 << 1;
+    private static final int BLACK_WIN = 1 << 2;
+    private static final int DRAW = 1 << 3;
+    private static final int FIRST_MOVE = 1 << 4;
+    private static final int KEYED = 1 << 5;
+
+    private static final int SQUARES_PER_LONG = Long.SIZE / 2;
+    private static final int TAIL_SQUARES = BitBoard.SQUARES - 2 * SQUARES_PER_LONG;
+    private static final int SQUARE_MASK = 0x7F;
+
+    private TablutCodec() {
+    }
+
+    public static void write(TablutState state, ByteBuffer buffer) {
+        write(state, buffer, false);
+    }
+
+    public static void write(TablutState state, ByteBuffer buffer, boolean withKey) {
+        int header = (state.getPlayerTurn() == TablutState.BLACK ? BLACK_TURN : 0)
+                | (state.isWhiteWin() ? WHITE_WIN : 0) | (state.isBlackWin() ? BLACK_WIN : 0)
+                | (state.isDraw() ? DRAW : 0) | (state.isFirstMove() ? FIRST_MOVE : 0) | (withKey ? KEYED : 0);
+        buffer.put((byte) header);
+        buffer.putLong(pack(state, 0, SQUARES_PER_LONG));
+        buffer.putLong(pack(state, SQUARES_PER_LONG, SQUARES_PER_LONG));
+        long tail = pack(state, 2 * SQUARES_PER_LONG, TAIL_SQUARES);
+        buffer.putInt((int) tail);
+        buffer.put((byte) (tail >>> Integer.SIZE));
+        if (withKey)
+            buffer.putLong(state.getKey());
+    }
+
+    public static void writeAll(List<TablutState> states, ByteBuffer buffer, boolean withKey) {
+        for (TablutState state : states)
+            write(state, buffer, withKey);
+    }
+
+    public static TablutState read(ByteBuffer buffer) {
+        int header = buffer.get();
+        byte[][] pawns = new byte[BitBoard.SIZE][BitBoard.SIZE];
+        unpack(buffer.getLong(), 0, SQUARES_PER_LONG, pawns);
+        unpack(buffer.getLong(), SQUARES_PER_LONG, SQUARES_PER_LONG, pawns);
+        long tail = buffer.getInt() & 0xFFFFFFFFL;
+        tail |= (buffer.get() & 0xFFL) << Integer.SIZE;
+        unpack(tail, 2 * SQUARES_PER_LONG, TAIL_SQUARES, pawns);
+
+        TablutState state = new TablutState((header & BLACK_TURN) != 0 ? TablutState.BLACK : TablutState.WHITE, pawns);
+        state.setFirstMove((header & FIRST_MOVE) != 0);
+        state.setResult((header & WHITE_WIN) != 0, (header & BLACK_WIN) != 0, (header & DRAW) != 0);
+        if ((header & KEYED) != 0 && buffer.getLong() != state.getKey())
+            throw new IllegalArgumentException("Position key does not match the encoded board");
+        return state;
+    }
+
+    public static List<TablutState> readAll(ByteBuffer buffer, int count) {
+        List<TablutState> states = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            states.add(read(buffer));
+        return states;
+    }
+
+    private static long pack(TablutState state, int first, int count) {
+        long bits = 0;
+        for (int i = 0; i < count; i++)
+            bits |= (long) state.getPawn(first + i) << (2 * i);
+        return bits;
+    }
+
+    private static void unpack(long bits, int first, int count, byte[][] pawns) {
+        for (int i = 0; i < count; i++) {
+            int square = first + i;
+            pawns[BitBoard.row(square)][BitBoard.column(square)] = (byte) (bits >>> (2 * i) & 0x3);
+        }
+    }
+
+    // Only the squares are stored; the pawn and the captures are recovered from the position the move is played in
+    public static short encodeMove(int move) {
+        return (short) (Move.from(move) | Move.to(move) << 7);
+    }
+
+    public static int decodeMove(TablutState state, short move) {
+        return state.toMove(move & SQUARE_MASK, move >>> 7 & SQUARE_MASK);
+    }
+
+    public static void writeMove(int move, ByteBuffer buffer) {
+        buffer.putShort(encodeMove(move));
+    }
+
+    public static int readMove(TablutState state, ByteBuffer buffer) {
+        return decodeMove(state, buffer.getShort());
+    }
+
+    public static void writeMoves(IntArrayList moves, ByteBuffer buffer) {
+        for (int i = 0; i < moves.size(); i++)
+            writeMove(moves.get(i), buffer);
+    }
+
+    public static void readMoves(TablutState start, ByteBuffer buffer, int count, IntArrayList moves) {
+        TablutState state = start.clone();
+        moves.clear();
+        for (int i = 0; i < count; i++) {
+            int move = readMove(state, buffer);
+            moves.add(move);
+            state.makeAction(move);
+        }
+    }
+}
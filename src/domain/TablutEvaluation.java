@@ -0,0 +1,66 @@
+package domain;
+
+public final class TablutEvaluation {
+    // score units are logits of a white win, positive when white is better
+    private static final double WHITE_PAWN = 0.35;
+    private static final double BLACK_PAWN = 0.2;
+    private static final double ESCAPE_LINE = 1.2;
+    private static final double KING_GUARD = 0.6;
+    private static final double KING_MOBILITY = 0.08;
+    private static final double MOBILITY = 0.01;
+    private static final double ESCAPE_THREAT = 4;
+
+    private TablutEvaluation() {
+    }
+
+    // Probability that black wins from this position, on the same scale as TablutGame playout results
+    public static double getBlackWinProbability(TablutState state) {
+        if (state.isWhiteWin())
+            return 0;
+        if (state.isBlackWin())
+            return 1;
+        if (state.isDraw())
+            return 0.5;
+        return 1 / (1 + Math.exp(getScore(state)));
+    }
+
+    public static double getScore(TablutState state) {
+        int king = state.getKingSquare();
+        int escapes = state.getOpenEscapes(king);
+        double score = WHITE_PAWN * (state.getWhitePawns() - 1 - TablutState.WHITE_PAWNS)
+                - BLACK_PAWN * (state.getBlackPawns() - TablutState.BLACK_PAWNS);
+        score += ESCAPE_LINE * escapes;
+        // an open line on white's turn, or two of them against a single black reply, are lost for black
+        if ((state.getPlayerTurn() == TablutState.WHITE && escapes > 0) || escapes > 1)
+            score += ESCAPE_THREAT;
+        score -= KING_GUARD * getKingGuards(state, king);
+
+        int whiteMobility = 0;
+        int blackMobility = 0;
+        long lo = state.getOccupiedLo();
+        long hi = state.getOccupiedHi();
+        for (int square = BitBoard.first(lo, hi); square != BitBoard.NONE; square = BitBoard.next(lo, hi, square)) {
+            int mobility = 0;
+            for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++)
+                mobility += Integer.bitCount(state.getDestinations(square, direction));
+            if (square == king)
+                score += KING_MOBILITY * mobility;
+            if (state.getPawn(square) == TablutState.BLACK)
+                blackMobility += mobility;
+            else
+                whiteMobility += mobility;
+        }
+        return score + MOBILITY * (whiteMobility - blackMobility);
+    }
+
+    private static int getKingGuards(TablutState state, int king) {
+        int guards = 0;
+        for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++) {
+            int square = BitBoard.neighbour(king, direction);
+            if (square != BitBoard.NONE && (state.getPawn(square) == TablutState.BLACK
+                    || BitBoard.contains(BitBoard.BOARD_BLOCKERS, square)))
+                guards++;
+        }
+        return guards;
+    }
+}
@@ -1,12 +1,10 @@
 package domain;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.LinkedList;
-import java.util.concurrent.ThreadLocalRandom;
 
-import aima.core.util.Util;
 import montecarlo.*;
+import utils.IntArrayList;
+import utils.WeightedSampler;
 
 
 public class TablutGame implements MonteCarloGame<TablutState, TablutAction> {
@@ -17,13 +15,50 @@ public class TablutGame implements MonteCarloGame<TablutState, TablutAction> {
     private final double WIN_WEIGHT = 1;
     private final double LOOSE_WEIGHT = 0;
 
-    private final int MAX_MOVES = 100;
+    private static final int MAX_MOVES = 100;
 
 
-    private Integer[] weights;
+    private int[] weights;
+    private PlayoutPolicy policy;
+    private int heavyPlies;
+    private int cutoffPlies;
+    private Tablebase tablebase;
 
-    public TablutGame(Integer[] weights) {
+    public TablutGame(int[] weights) {
+        this(weights, PlayoutPolicy.HEAVY, MAX_MOVES);
+    }
+
+    public TablutGame(int[] weights, PlayoutPolicy policy, int heavyPlies) {
+        this(weights, policy, heavyPlies, 0);
+    }
+
+    // HYBRID playouts use the heavy policy for their first heavyPlies moves and the light one after.
+    // A positive cutoffPlies stops playouts early and scores them with the static evaluation.
+    public TablutGame(int[] weights, PlayoutPolicy policy, int heavyPlies, int cutoffPlies) {
         this.weights = weights;
+        this.policy = policy;
+        this.heavyPlies = heavyPlies;
+        this.cutoffPlies = cutoffPlies;
+    }
+
+    public PlayoutPolicy getPlayoutPolicy() {
+        return policy;
+    }
+
+    public int getHeavyPlies() {
+        return heavyPlies;
+    }
+
+    public int getCutoffPlies() {
+        return cutoffPlies;
+    }
+
+    public Tablebase getTablebase() {
+        return tablebase;
+    }
+
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
     }
 
     @Override
@@ -41,40 +76,28 @@ public class TablutGame implements MonteCarloGame<TablutState, TablutAction> {
     @Override
     public double getPlayoutResult(TablutState state) {
         state = state.clone();
-        ArrayList<SimulateAction> actions = new ArrayList<>();
+        WeightedSampler sampler = WeightedSampler.get();
+        IntArrayList actions = new IntArrayList();
+        IntArrayList probs = new IntArrayList();
         byte player = state.getPlayerTurn();
         int moves = 0;
         boolean abortSimulation = false;
         boolean print = false;
+        int solved = Tablebase.NOT_FOUND;
         
         while (!state.isWhiteWin() && !state.isBlackWin() && !state.isDraw() && !abortSimulation) {
-            actions = state.getSimulatingActions(weights);
-            Collections.shuffle(actions);
+            if (tablebase != null && (solved = tablebase.probe(state)) != Tablebase.NOT_FOUND)
+                break;
+            if (policy == PlayoutPolicy.HEAVY || (policy == PlayoutPolicy.HYBRID && moves < heavyPlies))
+                state.getSimulatingMoves(weights, actions, probs);
+            else
+                state.getLightMoves(weights, actions, probs);
             if (!actions.isEmpty()) {
-                double[] probDist = new double[actions.size()];
-                int i = 0;
-                for(SimulateAction sa : actions) {
-                    probDist[i] = sa.getProb();
-                    i++;
-                }
-
-                probDist = Util.normalize(probDist);
-                double prob = ThreadLocalRandom.current().nextDouble();
-                double totalSoFar = 0.0;
-                TablutAction action = actions.get(actions.size() - 1);
-                for (i = 0; i < probDist.length; i++) {
-                    totalSoFar += probDist[i]; 
-                    if (prob <= totalSoFar) {
-                        action = actions.get(i);
-                        break;
-                    }
-                }
-                
-                state = state.copySimulation();
-                state.makeAction(action);
+                int action = sampler.sample(actions, probs);
+                state.makeMove(action);
                 player = state.getPlayerTurn();
                 moves++;
-                if(moves >= MAX_MOVES)
+                if(moves >= MAX_MOVES || (cutoffPlies > 0 && moves >= cutoffPlies))
                     abortSimulation = true;
             }
             else
@@ -85,9 +108,11 @@ public class TablutGame implements MonteCarloGame<TablutState, TablutAction> {
             print = true;
 
         double result = DRAW;
-        if(abortSimulation)
-            return result;
-        if (state.isWhiteWin()) 
+        if(solved != Tablebase.NOT_FOUND)
+            result = getTablebaseResult(state.getPlayerTurn(), solved);
+        else if(abortSimulation)
+            result = cutoffPlies > 0 ? TablutEvaluation.getBlackWinProbability(state) : DRAW;
+        else if (state.isWhiteWin()) 
             result = WHITE_WIN;
         else if (state.isBlackWin())
             result = BLACK_WIN;
@@ -100,24 +125,46 @@ public class TablutGame implements MonteCarloGame<TablutState, TablutAction> {
                 result = WHITE_WIN;
         }
 
+        for (; moves > 0; moves--)
+            state.unmakeMove();
         return result;
     }
 
+    private double getTablebaseResult(byte playerTurn, int value) {
+        int result = Tablebase.getResult(value);
+        if (result == Tablebase.DRAW)
+            return DRAW;
+        boolean whiteWins = (result == Tablebase.WIN) == (playerTurn == TablutState.WHITE);
+        return whiteWins ? WHITE_WIN : BLACK_WIN;
+    }
+
     @Override
     public double getUtility(TablutState state, double result) {
         byte playerTurn = state.getPlayerTurn();
         if (result == DRAW)
             return result;
-        if ((result == WHITE_WIN && playerTurn == TablutState.WHITE)
-                || (result == BLACK_WIN && playerTurn == TablutState.BLACK))
-            return LOOSE_WEIGHT;
-        return WIN_WEIGHT;
+        // truncated playouts return a black win probability between WHITE_WIN and BLACK_WIN
+        double win = playerTurn == TablutState.WHITE ? result - WHITE_WIN : BLACK_WIN - result;
+        return LOOSE_WEIGHT + (WIN_WEIGHT - LOOSE_WEIGHT) * win;
     }
 
     @Override
     public double selectionPolicyValue(MonteCarloNode<TablutState, TablutAction> node) {
+        // virtual losses of the threads currently searching below a node count as lost playouts
+        return selectionPolicyValue(node.getUtility(), node.getPlayoutsNumber() + node.getVirtualLosses(),
+                node.getParent().getPlayoutsNumber() + node.getParent().getVirtualLosses());
+    }
+
+    public double selectionPolicyValue(double utility, int playouts, int parentPlayouts) {
+        return selectionPolicyValue(utility, playouts, playouts, parentPlayouts);
+    }
+
+    // When children are shared by several parents, the mean comes from all the playouts of the
+    // child and the exploration from the visits through this parent only
+    public double selectionPolicyValue(double utility, int playouts, int visits, int parentPlayouts) {
         double C = Math.sqrt(2);
-        return (node.getUtility() / node.getPlayoutsNumber())
-                + C * Math.sqrt(Math.log(node.getParent().getPlayoutsNumber()) / node.getPlayoutsNumber());
+        if (playouts == 0 || visits == 0)
+            return Double.POSITIVE_INFINITY;
+        return (utility / playouts) + C * Math.sqrt(Math.log(parentPlayouts) / visits);
     }
 }
@@ -1,13 +1,39 @@
 package domain;
 
-import java.util.LinkedList;
+import java.util.List;
 
 import montecarlo.*;
+import utils.IntArrayList;
 
+// Monte Carlo tree search over a NodePool. Nodes store no state: every iteration replays the
+// selected path on a copy of the root state and unmakes it while back-propagating. Transpositions
+// share a node, so the selection walks a DAG: the mean comes from the shared node and the
+// exploration term from the visits of the edge, which is the only count specific to the parent.
 public class TablutSearch extends MonteCarloTreeSearch<TablutState, TablutAction> {
+    // share of the move time given to the proof-number pre-pass
+    private static final double SOLVER_SHARE = 0.05;
+    private static final int POOL_CAPACITY = 1 << 20;
+
+    private TablutGame tablutGame;
+    private ProofNumberSearch solver = new ProofNumberSearch();
+    private NodePool pool;
+    // root node of the last search, whose graph is searched for the next position
+    private int previousTree = NodePool.NONE;
+    private volatile boolean pondering;
+    private Thread ponderer;
 
     public TablutSearch(TablutGame game, double timeout) {
-        super(game, timeout);
+        this(game, timeout, 1, Parallelism.TREE);
+    }
+
+    public TablutSearch(TablutGame game, double timeout, int threads, Parallelism parallelism) {
+        this(game, timeout, threads, parallelism, POOL_CAPACITY);
+    }
+
+    public TablutSearch(TablutGame game, double timeout, int threads, Parallelism parallelism, int nodes) {
+        super(game, timeout, threads, parallelism);
+        this.tablutGame = game;
+        this.pool = new NodePool(nodes, 2 * nodes);
         if(timeout > 2)
             this.end = this.end - 2000;
     }
@@ -15,47 +41,254 @@ public class TablutSearch extends MonteCarloTreeSearch<TablutState, TablutAction
     @Override
     public TablutAction monteCarloTreeSearch(TablutState state) {
         long start = System.currentTimeMillis();
-        MonteCarloNode<TablutState, TablutAction> tree = new MonteCarloNode<>(state);
-        boolean first = true;
-        while(isTimeRemaining(start)) {
-            LinkedList<MonteCarloNode<TablutState, TablutAction>> children = null;
-            MonteCarloNode<TablutState, TablutAction> leaf = null;
-            leaf = select(tree);
-            children = expand(leaf);
-            if(children.isEmpty()) {
-                children = new LinkedList<>();
-                leaf.isLeaf(true);
-                children.add(leaf);
+        stopPondering();
+        Tablebase tablebase = tablutGame.getTablebase();
+        if (tablebase != null) {
+            int move = tablebase.getBestMove(state);
+            if (move != Move.NONE)
+                return state.toAction(move);
+        }
+        int proven = solver.solve(state, start + (long) (end * SOLVER_SHARE));
+        if (proven != Move.NONE) {
+            System.out.println("Proven win in " + solver.getNodes() + " nodes");
+            return state.toAction(proven);
+        }
+        int tree = reuseTree(state);
+        int reused = pool.getPlayouts(tree);
+        tree = searchTree(state, tree, start, false);
+        previousTree = tree;
+
+        System.out.println("Root values: " + pool.getUtility(tree) + "/" + pool.getPlayouts(tree)
+                + ", reused " + reused + ", nodes " + pool.size() + "/" + pool.getCapacity());
+
+        int first = pool.getFirstEdge(tree);
+        for(int edge = first; edge < first + pool.getEdgeCount(tree); edge++) {
+            int child = pool.getChild(edge);
+            System.out.println(state.toAction(pool.getMove(edge)).toString() + " " + pool.getUtility(child) + "/"
+                + pool.getPlayouts(child) + " = " + pool.getUtility(child)/pool.getPlayouts(child)
+                + ", visits " + pool.getEdgePlayouts(edge));
+        }
+
+        int move = getBestMove(tree);
+        if(move == Move.NONE)
+            move = getFallbackMove(state);
+        return move == Move.NONE ? null : state.toAction(move);
+    }
+
+    // First move in the usual order, for a root the pool had no room to expand
+    private int getFallbackMove(TablutState state) {
+        IntArrayList moves = new IntArrayList();
+        state.clone().getBestMovesFirst(moves);
+        return moves.isEmpty() ? Move.NONE : moves.get(0);
+    }
+
+    // Keeps searching the position, normally the one reached by our move, in the background until
+    // stopPondering or the next search, which then reuses the tree like the one of its own search.
+    public void startPondering(TablutState state) {
+        stopPondering();
+        if(!isSharingNodes())
+            return;
+        TablutState root = state.clone();
+        int tree = reuseTree(root);
+        previousTree = tree;
+        pondering = true;
+        ponderer = new Thread(() -> searchTree(root, tree, System.currentTimeMillis(), true), "mcts-ponder");
+        ponderer.setDaemon(true);
+        ponderer.start();
+    }
+
+    public void stopPondering() {
+        if(ponderer == null)
+            return;
+        pondering = false;
+        try {
+            ponderer.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ponderer = null;
+        System.out.println("Pondered " + pool.getPlayouts(previousTree) + " playouts");
+    }
+
+    // Root parallel workers grow independent trees, so their nodes are never shared by position
+    private boolean isSharingNodes() {
+        return threads == 1 || parallelism == Parallelism.TREE;
+    }
+
+    // Keeps what the previous searches found below the position, which is usually the node
+    // reached by our move and the reply, and frees the rest of the pool.
+    private int reuseTree(TablutState state) {
+        int tree = previousTree == NodePool.NONE ? NodePool.NONE : pool.find(state.getKey());
+        previousTree = NodePool.NONE;
+        if(tree != NodePool.NONE)
+            return pool.retain(tree);
+        pool.reset();
+        return pool.allocateRoot(isSharingNodes() ? state.getKey() : 0);
+    }
+
+    // Same parallel modes as MonteCarloTreeSearch.search: root parallel workers grow separate
+    // trees in the shared pool and their root edges are merged into the first expanded one.
+    // Pondering workers ignore the clock and stop as soon as stopPondering clears the flag.
+    private int searchTree(TablutState state, int tree, long start, boolean ponder) {
+        if(isSharingNodes()) {
+            runWorkers(() -> {
+                growTree(state, tree, start, ponder);
+                return tree;
+            });
+            return tree;
+        }
+        List<Integer> trees = runWorkers(() -> {
+            int root = pool.allocateRoot(0);
+            growTree(state, root, start, ponder);
+            return root;
+        });
+        int merged = trees.get(0);
+        for(int other : trees)
+            if(pool.isExpanded(other)) {
+                merged = other;
+                break;
             }
-            if(first && children.size() == 1) 
+        for(int other : trees)
+            if(other != merged)
+                pool.merge(merged, other);
+        return merged;
+    }
+
+    private void growTree(TablutState root, int tree, long start, boolean ponder) {
+        // move generation makes and unmakes moves on the state, so every worker needs its own copy
+        TablutState state = root.clone();
+        IntArrayList moves = new IntArrayList();
+        IntArrayList nodes = new IntArrayList();
+        IntArrayList edges = new IntArrayList();
+        double[] results = new double[0];
+        // the root is expanded even when there is no time left, so it always has a move to play
+        while((!pool.isExpanded(tree) || (ponder ? pondering : isTimeRemaining(start))) && !isForced(tree)) {
+            nodes.clear();
+            edges.clear();
+            int leaf = select(state, tree, nodes, edges);
+            // a repetition only ends the game along this path, so the node itself is not terminal
+            boolean repetition = state.isDraw();
+            int children = repetition ? 0 : expand(state, leaf, moves);
+            if(leaf == tree && (children == 0 || children == 1))
                 break;
-            for(MonteCarloNode<TablutState, TablutAction> child : children) {
-                double result = simulate(child);
-                backPropagate(result, child);
+            if(results.length < Math.max(children, 1))
+                results = new double[Math.max(children, 1)];
+            int count = 0;
+            int first = pool.getFirstEdge(leaf);
+            for(int edge = first; edge < first + children; edge++) {
+                int child = pool.getChild(edge);
+                // transpositions already have statistics and are left to the selection
+                if(pool.getPlayouts(child) > 0)
+                    continue;
+                state.makeMove(pool.getMove(edge));
+                double result = tablutGame.getPlayoutResult(state);
+                pool.updatePlayoutResults(child, tablutGame.getUtility(state, result));
+                pool.addEdgePlayouts(edge, 1);
+                state.unmakeMove();
+                results[count++] = result;
             }
-            first = false;
+            if(children == 0)
+                results[count++] = tablutGame.getPlayoutResult(state);
+            backPropagate(state, nodes, edges, results, count, repetition && pool.isShared(leaf));
         }
-        
-        System.out.println("Root values: " + tree.getUtility() + "/" + tree.getPlayoutsNumber());
-        
-        for(MonteCarloNode<TablutState, TablutAction> node : tree.getChildren())
-            System.out.println(node.getAction().toString() + " " + node.getUtility() + "/" + node.getPlayoutsNumber() +
-                " = " + node.getUtility()/node.getPlayoutsNumber());
+    }
 
-        return bestAction(tree);   
+    // a root with a single move, or none, needs no search
+    private boolean isForced(int tree) {
+        return pool.isExpanded(tree) && pool.getEdgeCount(tree) <= 1;
     }
 
-    @Override
-    protected TablutAction bestAction(MonteCarloNode<TablutState, TablutAction> tree) {
-        double bestValue = Double.NEGATIVE_INFINITY;
-        TablutAction bestAction = null;
-        for(MonteCarloNode<TablutState, TablutAction> child : tree.getChildren()) {
-            double value = child.getPlayoutsNumber();
-            if(value > bestValue) {
-                bestValue = value;
-                bestAction = child.getAction();
+    // Descends to a leaf, making the moves along the way on the state and recording the nodes
+    // and edges of the path. Stops early at a repetition, which ends the game on this path.
+    private int select(TablutState state, int node, IntArrayList nodes, IntArrayList edges) {
+        nodes.add(node);
+        while(!pool.isLeaf(node) && !state.isDraw()) {
+            int first = pool.getFirstEdge(node);
+            int parentPlayouts = pool.getPlayouts(node) + pool.getVirtualLosses(node);
+            double bestValue = Double.NEGATIVE_INFINITY;
+            int bestEdge = NodePool.NONE;
+            for(int edge = first; edge < first + pool.getEdgeCount(node); edge++) {
+                int child = pool.getChild(edge);
+                int virtualLosses = pool.getVirtualLosses(child);
+                double value = tablutGame.selectionPolicyValue(pool.getUtility(child),
+                    pool.getPlayouts(child) + virtualLosses, pool.getEdgePlayouts(edge) + virtualLosses, parentPlayouts);
+                if(value > bestValue) {
+                    bestValue = value;
+                    bestEdge = edge;
+                }
             }
+            if(bestEdge == NodePool.NONE)
+                break;
+            node = pool.getChild(bestEdge);
+            if(isSharedTree())
+                pool.addVirtualLoss(node);
+            state.makeMove(pool.getMove(bestEdge));
+            nodes.add(node);
+            edges.add(bestEdge);
         }
-        return bestAction;
+        return node;
+    }
+
+    // Number of edges created, 0 for a leaf to simulate itself, -1 when another thread has
+    // expanded the leaf or is still expanding it. Children are looked up by position, except
+    // for finished games, whose result may depend on the path. Once the pool is full, leaves
+    // are only simulated.
+    private int expand(TablutState state, int leaf, IntArrayList moves) {
+        if(pool.isFull() || !pool.startExpansion(leaf))
+            return pool.isExpanding(leaf) || !pool.isLeaf(leaf) ? -1 : 0;
+        state.getBestMovesFirst(moves);
+        if(!pool.hasRoom(moves.size())) {
+            pool.abortExpansion(leaf);
+            return 0;
+        }
+        int first = moves.isEmpty() ? NodePool.NONE : pool.allocateEdges(moves);
+        for(int i = 0; i < moves.size() && first != NodePool.NONE; i++) {
+            state.makeMove(moves.get(i));
+            boolean over = state.isWhiteWin() || state.isBlackWin() || state.isDraw();
+            int child = over || !isSharingNodes() ? pool.allocateNode(0) : pool.getNode(state.getKey());
+            state.unmakeMove();
+            if(child == NodePool.NONE)
+                first = NodePool.NONE;
+            else
+                pool.setChild(first + i, child);
+        }
+        if(first == NodePool.NONE && !moves.isEmpty()) {
+            pool.abortExpansion(leaf);
+            return 0;
+        }
+        pool.endExpansion(leaf, first, moves.size());
+        return moves.size();
+    }
+
+    // Updates the nodes and edges of the path with the results, unmaking it up to the root. A draw
+    // by repetition of a shared position only holds on this path, so it skips the leaf node and is
+    // only counted by the edge into it and the ancestors.
+    private void backPropagate(TablutState state, IntArrayList nodes, IntArrayList edges, double[] results,
+            int count, boolean pathOnly) {
+        for(int i = nodes.size() - 1;; i--) {
+            int node = nodes.get(i);
+            if(!pathOnly || i < nodes.size() - 1)
+                for(int j = 0; j < count; j++)
+                    pool.updatePlayoutResults(node, tablutGame.getUtility(state, results[j]));
+            if(i == 0)
+                break;
+            pool.addEdgePlayouts(edges.get(i - 1), count);
+            if(isSharedTree())
+                pool.removeVirtualLoss(node);
+            state.unmakeMove();
+        }
+    }
+
+    // most visited edge: transpositions make the visits of the child node include other parents
+    private int getBestMove(int tree) {
+        int bestValue = -1;
+        int bestMove = Move.NONE;
+        int first = pool.getFirstEdge(tree);
+        for(int edge = first; edge < first + pool.getEdgeCount(tree); edge++)
+            if(pool.getEdgePlayouts(edge) > bestValue) {
+                bestValue = pool.getEdgePlayouts(edge);
+                bestMove = pool.getMove(edge);
+            }
+        return bestMove;
     }
 }
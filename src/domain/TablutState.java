@@ -1,1231 +1,1575 @@
-package domain;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.function.Function;
-
-public class TablutState {
-    public static final byte EMPTY = 0;
-    public static final byte WHITE = 1;
-    public static final byte BLACK = 2;
-    public static final byte KING = 3;
-    public static final byte ESCAPE = 1;
-    public static final byte CAMP = 2;
-    public static final byte CITADEL = 3;
-
-    public static final int BOARD_SIZE = 9;
-
-    public static final int WHITE_PAWNS = 8;
-    public static final int BLACK_PAWNS = 16;
-
-    private static final byte[][] board = initBoard();
-
-    private byte[][] pawns;
-    private byte playerTurn;
-    private Coordinates kingPosition;
-
-    private boolean whiteWin = false;
-    private boolean blackWin = false;
-    private boolean draw = false;
-    private int blackPawns;
-    private int whitePawns;
-    private LinkedList<TablutState> drawConditions;
-
-    private boolean firstMove = false;
-    private TablutAction firstAction = null;
-    private TablutAction previousAction = null;
-
-    private enum Directions {
-        UP(0), RIGHT(1), DOWN(2), LEFT(3);
-
-        private int value;
-
-        private Directions(int value) {
-            this.value = value;
-        }
-    }
-
-    public TablutState(byte playerTurn) {
-        this.playerTurn = playerTurn;
-        this.kingPosition = new Coordinates(4, 4);
-        this.whitePawns = WHITE_PAWNS;
-        this.blackPawns = BLACK_PAWNS;
-        this.firstMove = true;
-        this.drawConditions = new LinkedList<>();
-        this.drawConditions.add(this);
-        initPawns();
-    }
-
-    public TablutState(byte playerTurn, byte[][] pawns) {
-        this.pawns = pawns;
-        this.playerTurn = playerTurn;
-        this.kingPosition = getKingPosition();
-        this.whitePawns = WHITE_PAWNS;
-        this.blackPawns = BLACK_PAWNS;
-        this.firstMove = false;
-        this.drawConditions = new LinkedList<>();
-        this.drawConditions.add(this);
-    }
-
-    public TablutState(byte[][] pawns, byte playerTurn, boolean firstMove, TablutAction firstAction, LinkedList<TablutState> drawConditions) {
-        this.pawns = pawns;
-        this.playerTurn = playerTurn;
-        this.blackPawns = 0;
-        this.whitePawns = 0;
-        this.drawConditions = new LinkedList<>();
-        this.drawConditions.addAll(drawConditions);
-        this.drawConditions.add(this);
-        this.firstMove = firstMove;
-        this.firstAction = firstAction;
-        initState();
-    }
-
-    private TablutState(TablutState state, byte[][] pawns, Coordinates kingPosition,
-            LinkedList<TablutState> drawConditions) {
-        this.pawns = pawns;
-        this.playerTurn = state.getPlayerTurn();
-        this.blackPawns = state.getBlackPawns();
-        this.whitePawns = state.getWhitePawns();
-        this.draw = state.isDraw();
-        this.kingPosition = kingPosition;
-        this.blackWin = state.isBlackWin();
-        this.whiteWin = state.isWhiteWin();
-        this.drawConditions = new LinkedList<>();
-        this.drawConditions.addAll(drawConditions);
-        this.firstMove = state.isFirstMove();
-        this.firstAction = state.getFirstAction();
-        this.previousAction = state.getPreviousAction();
-    }
-
-    private Coordinates getKingPosition() {
-        for (int i = 0; i < BOARD_SIZE; i++)
-            for (int j = 0; j < BOARD_SIZE; j++)
-                if (pawns[i][j] == KING)
-                    return new Coordinates(i, j);
-        return null;
-    }
-
-    public static byte[][] initBoard() {
-        byte[][] board = new byte[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 1; i < BOARD_SIZE - 1; i++) {
-            if (i < 3 || i > 5) {
-                board[0][i] = ESCAPE;
-                board[i][0] = ESCAPE;
-                board[BOARD_SIZE - 1][i] = ESCAPE;
-                board[i][BOARD_SIZE - 1] = ESCAPE;
-            } else {
-                board[0][i] = CAMP;
-                board[i][0] = CAMP;
-                board[BOARD_SIZE - 1][i] = CAMP;
-                board[i][BOARD_SIZE - 1] = CAMP;
-            }
-        }
-        board[1][4] = CAMP;
-        board[4][1] = CAMP;
-        board[BOARD_SIZE - 2][4] = CAMP;
-        board[4][BOARD_SIZE - 2] = CAMP;
-        board[4][4] = CITADEL;
-        return board;
-    }
-
-    private void initState() {
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                if (pawns[i][j] == BLACK)
-                    blackPawns++;
-                else if (pawns[i][j] == WHITE)
-                    whitePawns++;
-                else if (pawns[i][j] == KING) {
-                    whitePawns++;
-                    kingPosition = new Coordinates(i, j);
-                }
-            }
-        }
-        if (kingPosition == null)
-            blackWin = true;
-        else if (isOnPosition(kingPosition, ESCAPE))
-            whiteWin = true;
-    }
-
-    public byte[][] getBoard() {
-        return pawns;
-    }
-
-    private LinkedList<TablutAction> getPawnActions(Coordinates coord, byte pawn) {
-        LinkedList<TablutAction> actions = new LinkedList<>();
-        actions.addAll(searchActions(coord, pawn, -1, true));
-        actions.addAll(searchActions(coord, pawn, 1, false));
-        actions.addAll(searchActions(coord, pawn, 1, true));
-        actions.addAll(searchActions(coord, pawn, -1, false));
-        return actions;
-    }
-
-    public void initPawns() {
-        pawns = new byte[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 1; i < BOARD_SIZE - 1; i++) {
-            if (i < 3) {
-                pawns[4][i + 1] = WHITE;
-                pawns[i + 1][4] = WHITE;
-                pawns[4][BOARD_SIZE - i - 2] = WHITE;
-                pawns[BOARD_SIZE - i - 2][4] = WHITE;
-            } else if (i <= 5) {
-                pawns[0][i] = BLACK;
-                pawns[i][0] = BLACK;
-                pawns[BOARD_SIZE - 1][i] = BLACK;
-                pawns[i][BOARD_SIZE - 1] = BLACK;
-            }
-        }
-        pawns[1][4] = BLACK;
-        pawns[4][1] = BLACK;
-        pawns[BOARD_SIZE - 2][4] = BLACK;
-        pawns[4][BOARD_SIZE - 2] = BLACK;
-        pawns[4][4] = KING;
-    }
-
-    @Override
-    public String toString() {
-        String result = "";
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                if (pawns[i][j] == BLACK)
-                    result = result + "B";
-                else if (pawns[i][j] == WHITE)
-                    result = result + "W";
-                else if (pawns[i][j] == KING)
-                    result = result + "K";
-                else if (pawns[i][j] == EMPTY)
-                    if(board[i][j] == CITADEL) 
-                        result = result + "T";
-                    else if(board[i][j] == CAMP)
-                        result = result + "X";
-                    else
-                        result = result + "-";
-                else
-                    result = result + "?";
-            }
-            result = result + "\n";
-        }
-        result = result + "\n";
-        return result;
-    }
-
-    @Override
-    public TablutState clone() {
-        byte[][] newPawns = new byte[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 0; i < BOARD_SIZE; i++)
-            for (int j = 0; j < BOARD_SIZE; j++)
-                newPawns[i][j] = pawns[i][j];
-        TablutState newState = new TablutState(this, newPawns, kingPosition, drawConditions);
-        return newState;
-    }
-
-    public TablutState copySimulation() {
-        byte[][] newPawns = new byte[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 0; i < BOARD_SIZE; i++)
-            for (int j = 0; j < BOARD_SIZE; j++)
-                newPawns[i][j] = pawns[i][j];
-        TablutState newState = new TablutState(this, newPawns, kingPosition, drawConditions);
-        return newState;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (this.getClass() != obj.getClass())
-            return false;
-        TablutState state = (TablutState) obj;
-        for (int i = 0; i < BOARD_SIZE; i++)
-            for (int j = 0; j < BOARD_SIZE; j++)
-                if (pawns[i][j] != state.getPawns()[i][j])
-                    return false;
-        return true;
-    }
-
-    public void printList(LinkedList<TablutAction> l) {
-        for (TablutAction a : l)
-            System.out.println(a.toString());
-    }
-
-    private Directions getDirection(Coordinates prev, Coordinates next) {
-        if (prev.row == next.row) {
-            if (prev.column > next.column)
-                return Directions.LEFT;
-            else
-                return Directions.RIGHT;
-        } else {
-            if (prev.row > next.row)
-                return Directions.UP;
-            else
-                return Directions.DOWN;
-        }
-    }
-
-    public byte getValue(byte[][] b, Coordinates c) {
-        return b[c.row][c.column];
-    }
-
-    public ArrayList<SimulateAction> getSimulatingActions(Integer[] weights) {
-        if (whiteWin || blackWin || draw)
-            return new ArrayList<>();
-        LinkedList<TablutAction> actions = getLegalActions();
-        ArrayList<SimulateAction> result = new ArrayList<>(actions.size());
-        LinkedList<Coordinates> toProtect = new LinkedList<>();
-        
-        toProtect = getProtectionCoordinates();
-        boolean loosing = false;
-        TablutAction kingAction = null;
-        if (actions.isEmpty()) {
-            if (playerTurn == WHITE)
-                blackWin = true;
-            else
-                whiteWin = true;
-            return result;
-        }
-        if (playerTurn == BLACK) {
-            for (TablutAction ka : getPawnActions(kingPosition, KING)) {
-                if (isOnPosition(ka.coordinates, ESCAPE)) {
-                    kingAction = ka;
-                    break;
-                }
-            }
-        }
-        if (firstMove) {
-            if (playerTurn == WHITE)
-                result.add(new SimulateAction(whiteOpening(), 1));
-            else {
-                result.add(new SimulateAction(blackOpening(firstAction), 1));
-                firstMove = false;
-            }
-            return result;
-        }
-
-        for (TablutAction action : actions) {
-            if (isWin(action)) {
-                result = new ArrayList<>();
-                result.add(new SimulateAction(action, 1));
-                break;
-            } else if (isPreventingLoose(action, kingAction, toProtect)) {
-                if (!loosing)
-                    result = new ArrayList<>();
-                result.add(new SimulateAction(action, 1));
-                loosing = true;
-                
-            }
-        }
-        if (!result.isEmpty()) {
-            return result;
-        }
-
-        boolean toMiddleGame = false;
-        BoardSet boardSet = null;
-        if(!isEarlyGame()) {
-            if(kingPosition.row == 4 || kingPosition.column == 4)
-                boardSet = Side.getSideFromMiddle(kingPosition);
-            else 
-                boardSet = Quadrant.getQuadrant(kingPosition);
-        }
-        for(TablutAction action : actions) { 
-            if(!action.getCaptured().isEmpty() && ((this.playerTurn == BLACK && !isKingCheck(action)) || (this.playerTurn == WHITE && !willKingBeCaptured(action))) && !toMiddleGame) {
-                if(action.pawn.getPawnType() != KING) {
-                    for(Capture c : action.getCaptured()) {
-                        if(c.getCaptured().position.equals(previousAction.coordinates)) {
-                            result = new ArrayList<>();
-                            result.add(new SimulateAction(action, weights[Weights.CAPTURE.value()]));
-                            return result;
-                        }
-                    }
-                    result.add(new SimulateAction(action, weights[Weights.CAPTURE.value()]));
-                }
-                else {
-                    result.add(new SimulateAction(action, weights[Weights.CAPTURE.value()]));
-                }
-            }
-            else if(action.pawn.getPawnType() == KING) {
-                if(!willKingBeCaptured(action)) {
-                    if(isEarlyGame()) {
-                        if(isKingCovered(action)) {
-                            if(!toMiddleGame)
-                                result = new ArrayList<>();
-                            result.add(new SimulateAction(action, weights[Weights.CAPTURE.value()]));
-                            toMiddleGame = true;
-                        }
-                        else if(!toMiddleGame) {
-                            result.add(new SimulateAction(action, 35));
-                        }
-                    }
-                    else if(isKingCheck(action)) {
-                        result.add(new SimulateAction(action, weights[Weights.KING_CHECK.value()]));
-                    }
-                    else { 
-                        result.add(new SimulateAction(action, weights[Weights.STANDARD_ACTION.value()]));
-                    }
-                }
-            }
-            else if(action.pawn.getPawnType() == BLACK && !willBeCaptured(action)) {
-                if(!isKingCheck(action)) {
-                    if(isEarlyGame() && !toMiddleGame) {
-                        if(Boards.isBlackCell(action))
-                            result.add(new SimulateAction(action, weights[Weights.STANDARD_ACTION.value()]));
-                    }
-                    else /*if(boardSet != null && (boardSet.contains(action.coordinates) || boardSet.contains(action.pawn.position)))*/ {
-                        if(isAttackingKing(action)) {
-                            result.add(new SimulateAction(action, weights[Weights.BLACK_ATTACK.value()]));
-                        }
-                        else if(isBlockingKing(action)) {
-                            result.add(new SimulateAction(action, weights[Weights.BLACK_ATTACK.value()]));
-                        }
-                        else {
-                            result.add(new SimulateAction(action, weights[Weights.STANDARD_ACTION.value()]));
-                        }
-                    }
-                }
-            }
-            else if(action.pawn.getPawnType() == WHITE && !willBeCaptured(action)) {
-                if(!willKingBeCaptured(action)) {
-                    if(isEarlyGame() && !toMiddleGame) {
-                        if(action.coordinates.row != 4 && action.coordinates.column != 4) {
-                            if(Boards.isValidPositioning(pawns, action)) {
-                                result.add(new SimulateAction(action, weights[Weights.STANDARD_ACTION.value()]));
-                            }
-                        }
-                    }
-                    else /*if(boardSet != null && (boardSet.contains(action.coordinates) || boardSet.contains(action.pawn.position)))*/ {
-                        if(boardSet != null && boardSet.contains(action.coordinates) && isToBorder(action)) {
-                            result.add(new SimulateAction(action, weights[Weights.WHITE_BORDER.value()]));
-                        }
-                        else {
-                            result.add(new SimulateAction(action, weights[Weights.STANDARD_ACTION.value()]));
-                        }
-                    }
-                }
-            }   
-        }      
-
-        if(result.isEmpty()) {
-            return toSimulateActions(actions);
-        }
-        return result;
-    }
-
-    private boolean isBlockingKing(TablutAction action) {
-        if(action.pawn.getPawnType() != BLACK) 
-            return false;
-        return action.coordinates.row == kingPosition.row || action.coordinates.column == kingPosition.column;
-    } 
-
-    private boolean isKingCovered(TablutAction action) {
-        Side s = Side.getSideFromMiddle(action.coordinates);
-        int whites = 0;
-        boolean row = action.coordinates.row == 4;
-        for(int i = 0; i < BOARD_SIZE; i++) {
-            for(int j = 0; j < BOARD_SIZE; j++) {
-                if((row ? j != 4 : i != 4) && pawns[i][j] == WHITE && s.contains(new Coordinates(i, j))) {
-                    whites++;
-                    if(whites == 3)  {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
-    }
-
-    private boolean isAttackingKing(TablutAction action) {
-        if(action.pawn.getPawnType() != BLACK)
-            return false;
-        int r = action.coordinates.row;
-        int c = action.coordinates.column;
-        if(r + 1 < BOARD_SIZE && pawns[r + 1][c] == KING)
-            return true;
-        else if(r - 1 >= 0 && pawns[r - 1][c] == KING) 
-            return true;
-        else if(c + 1 < BOARD_SIZE && pawns[r][c + 1] == KING) 
-            return true;
-        else if(c - 1 >= 0 && pawns[r][c - 1] == KING) 
-            return true;
-        return false;
-    }
-
-    private boolean isToBorder(TablutAction action) {
-        if((action.pawn.position.row == kingPosition.row || action.pawn.position.column == kingPosition.column) 
-            && (action.coordinates.row == 0 || action.coordinates.row == BOARD_SIZE - 1 
-            || action.coordinates.column == 0 || action.coordinates.column == BOARD_SIZE - 1))
-            return true;
-        return false;
-    }
-
-    private ArrayList<SimulateAction> toSimulateActions(LinkedList<TablutAction> actions) {
-        ArrayList<SimulateAction> result = new ArrayList<>();
-        for(TablutAction a : actions)
-            result.add(new SimulateAction(a, 1));
-        return result;
-    }
-
-    private boolean searchEscape(Coordinates pos, Directions dir) {
-        boolean row = dir == Directions.UP || dir == Directions.DOWN;
-        int step = dir == Directions.UP || dir == Directions.LEFT ? -1 : 1;
-        boolean result = false;
-        for(int i = (row ? pos.row : pos.column) + step ; step > 0 ? i < BOARD_SIZE : i >= 0; i += step) {
-            Coordinates c = new Coordinates(row ? i : pos.row, row ? pos.column : i);
-            if(getValue(board, c) == ESCAPE)
-                result = true;
-            else if(getValue(pawns, c) != EMPTY || getValue(board, c) != EMPTY)
-                break;
-        }
-        return result;
-    }
-
-    private boolean isKingCheck(TablutAction action) {
-        makeTemporaryAction(action);
-        for(Directions dir : getOtherAxisDirections(getDirection(action.pawn.position, action.coordinates))) {
-            if(searchEscape(kingPosition, dir)) {
-                undoTemporaryAction(action);
-                return true;
-            }
-        }
-        undoTemporaryAction(action);
-        return false;
-    }
-
-    private Directions[] getOtherAxisDirections(Directions dir) {
-        if (dir == Directions.DOWN || dir == Directions.UP)
-            return new Directions[] { Directions.RIGHT, Directions.LEFT };
-        else
-            return new Directions[] { Directions.UP, Directions.DOWN };
-    }
-
-    private Directions[] getOtherDirections(Directions dir) {
-        if (dir == Directions.UP)
-            return new Directions[] {Directions.RIGHT, Directions.DOWN, Directions.LEFT};
-        else if(dir == Directions.RIGHT)
-            return new Directions[] {Directions.UP, Directions.DOWN, Directions.LEFT};
-        else if(dir == Directions.DOWN)
-            return new Directions[] {Directions.UP, Directions.RIGHT, Directions.LEFT};
-        else 
-            return new Directions[] {Directions.UP, Directions.RIGHT, Directions.DOWN};
-    }
-    
-    public LinkedList<TablutAction> getBestActionFirst() {
-        if (whiteWin || blackWin || draw)
-            return new LinkedList<>();
-
-        LinkedList<TablutAction> actions = getLegalActions();
-        Collections.shuffle(actions);
-        LinkedList<TablutAction> result = new LinkedList<>();
-        LinkedList<Coordinates> toProtect = new LinkedList<>();
-        boolean loosing = false;
-        TablutAction kingAction = null;
-
-        toProtect = getProtectionCoordinates();
-
-        if (actions.isEmpty()) {
-            if (playerTurn == WHITE)
-                blackWin = true;
-            else
-                whiteWin = true;
-            return result;
-        }
-        if (playerTurn == BLACK) {
-            for (TablutAction ka : getPawnActions(kingPosition, KING)) {
-                if (isOnPosition(ka.coordinates, ESCAPE)) {
-                    kingAction = ka;
-                    break;
-                }
-            }
-        }
-        if (firstMove) {
-            if (playerTurn == WHITE)
-                result.add(whiteOpening());
-            else {
-                result.add(blackOpening(firstAction));
-                firstMove = false;
-            }
-            return result;
-        }
-        for (TablutAction action : actions) {
-            if (isWin(action)) {
-                result = new LinkedList<>();
-                result.add(action);
-                break;
-            } else if (isPreventingLoose(action, kingAction, toProtect)) {
-                if (!loosing)
-                    result = new LinkedList<>();
-                result.add(action);
-                loosing = true;
-            }
-        }
-        if(!result.isEmpty()) 
-            return result;
-
-        for(TablutAction action : actions) {
-            if(action.pawn.getPawnType() == KING)
-                result.addFirst(action);
-            else if(!action.getCaptured().isEmpty())
-                result.addFirst(action);
-            else if(isEarlyGame() && this.playerTurn == WHITE) {
-                if((action.coordinates.row != 4 && action.coordinates.column != 4)) {
-                    if(Boards.isValidPositioning(pawns, action))
-                        result.add(action);
-                }
-            }
-            else if(isEarlyGame() && this.playerTurn == BLACK) {
-                if(Boards.isBlackCell(action))
-                    result.add(action);
-            }
-            else {
-                result.add(action);
-            }
-        }    
-        if (result.isEmpty())
-            return actions;
-        return result;
-    }
-
-    private boolean isEarlyGame() {
-        return pawns[4][4] == KING;
-    }
-
-    public TablutAction whiteOpening() {
-        return new TablutAction(new Coordinates(2, 1), new Pawn(WHITE, new Coordinates(2, 4)));
-    }
-
-    public TablutAction blackOpening(TablutAction whiteOpening) {
-        HashMap<TablutAction, TablutAction> responses = new HashMap<>();
-        Coordinates whiteUp = new Coordinates(2, 4);
-        Coordinates whiteDown = new Coordinates(3, 4);
-        responses.put(new TablutAction(new Coordinates(2, 0), new Pawn(WHITE, whiteUp)),
-                new TablutAction(new Coordinates(2, 5), new Pawn(BLACK, new Coordinates(0, 5))));
-        responses.put(new TablutAction(new Coordinates(2, 1), new Pawn(WHITE, whiteUp)),
-                new TablutAction(new Coordinates(2, 5), new Pawn(BLACK, new Coordinates(0, 5))));
-        responses.put(new TablutAction(new Coordinates(2, 2), new Pawn(WHITE, whiteUp)),
-                new TablutAction(new Coordinates(2, 5), new Pawn(BLACK, new Coordinates(0, 5))));
-        responses.put(new TablutAction(new Coordinates(2, 3), new Pawn(WHITE, whiteUp)),
-                new TablutAction(new Coordinates(1, 6), new Pawn(BLACK, new Coordinates(1, 4))));
-        responses.put(new TablutAction(new Coordinates(3, 1), new Pawn(WHITE, whiteDown)),
-                new TablutAction(new Coordinates(3, 4), new Pawn(BLACK, new Coordinates(3, 8))));
-        responses.put(new TablutAction(new Coordinates(3, 2), new Pawn(WHITE, whiteDown)),
-                new TablutAction(new Coordinates(3, 4), new Pawn(BLACK, new Coordinates(3, 8))));
-        responses.put(new TablutAction(new Coordinates(3, 3), new Pawn(WHITE, whiteDown)),
-                new TablutAction(new Coordinates(1, 6), new Pawn(BLACK, new Coordinates(1, 4))));
-
-        if (responses.get(whiteOpening) != null) {
-            TablutAction result = responses.get(whiteOpening);
-            result.addCapture(getCaptured(result.coordinates, BLACK, result.coordinates.row + 2, result.coordinates.column));
-            result.addCapture(getCaptured(result.coordinates, BLACK, result.coordinates.row - 2, result.coordinates.column));
-            result.addCapture(getCaptured(result.coordinates, BLACK, result.coordinates.row, result.coordinates.column + 2));
-            result.addCapture(getCaptured(result.coordinates, BLACK, result.coordinates.row, result.coordinates.column - 2));
-            return result;
-        }
-
-        Coordinates position = new Coordinates(whiteOpening.pawn.position.row, whiteOpening.pawn.position.column);
-        Coordinates destination = new Coordinates(whiteOpening.coordinates.row, whiteOpening.coordinates.column);
-
-        boolean swap = false;
-        boolean columnPos = false;
-        if (position.row == 4) {
-            int temp = position.row;
-            position.row = position.column;
-            position.column = temp;
-            swap = true;
-        }
-        if (position.column > 4) {
-            position.column = BOARD_SIZE - 1 - position.column;
-            columnPos = true;
-        }
-        if (position.row > 4) {
-            position.row = BOARD_SIZE - 1 - position.row;
-            columnPos = true;
-        }
-        boolean mirror = true;
-
-        Directions dir = getDirection(whiteOpening.pawn.position, whiteOpening.coordinates);
-        if ((dir == Directions.UP && swap && columnPos) || (dir == Directions.DOWN && swap && !columnPos)
-                || (dir == Directions.LEFT && !swap && !columnPos) || (dir == Directions.RIGHT && !swap && columnPos)) {
-            mirror = false;
-        }
-
-        if(destination.row == whiteOpening.pawn.position.row) 
-            destination.column = 4 - Math.abs(whiteOpening.pawn.position.column - destination.column);
-        else 
-            destination.column = 4 - Math.abs(whiteOpening.pawn.position.row - destination.row);
-        destination.row = position.row;
-
-        TablutAction response = responses.get(new TablutAction(destination, new Pawn(WHITE, position)));
-        Coordinates resPos = response.pawn.position;
-        Coordinates resDest = response.coordinates;
-        if (mirror) {
-            resPos.column = BOARD_SIZE - 1 - resPos.column;
-            resDest.column = BOARD_SIZE - 1 - resDest.column;
-        }
-        if (swap || columnPos) {
-            if (swap) {
-                int temp = resPos.row;
-                resPos.row = resPos.column;
-                resPos.column = temp;
-                temp = resDest.row;
-                resDest.row = resDest.column;
-                resDest.column = temp;
-                if (columnPos) {
-                    resPos.column = BOARD_SIZE - 1 - resPos.column;
-                    resDest.column = BOARD_SIZE - 1 - resDest.column;
-                } else {
-                    resPos.row = BOARD_SIZE - 1 - resPos.row;
-                    resDest.row = BOARD_SIZE - 1 - resDest.row;
-                }
-            } else {
-                resPos.column = BOARD_SIZE - 1 - resPos.column;
-                resPos.row = BOARD_SIZE - 1 - resPos.row;
-                resDest.row = BOARD_SIZE - 1 - resDest.row;
-                resDest.column = BOARD_SIZE - 1 - resDest.column;
-            }
-        }
-        TablutAction result = new TablutAction(resDest, new Pawn(BLACK, resPos));
-        result.addCapture(getCaptured(resDest, BLACK, resDest.row + 2, resDest.column));
-        result.addCapture(getCaptured(resDest, BLACK, resDest.row - 2, resDest.column));
-        result.addCapture(getCaptured(resDest, BLACK, resDest.row, resDest.column + 2));
-        result.addCapture(getCaptured(resDest, BLACK, resDest.row, resDest.column - 2));
-        return result;
-    }
-
-    private boolean isKingNearCitadel() {
-        int r = kingPosition.row;
-        int c = kingPosition.column;
-        return (r == 4 && (c == 3 || c == 5)) || (c == 4 && (r == 3 || r == 5));
-    }
-
-    private LinkedList<Coordinates> getProtectionCoordinates() {
-        if(this.playerTurn == WHITE) {
-            return getWhiteProtection();
-        }
-        return getBlackProtection();
-    }
-
-    private LinkedList<Coordinates> getBlackProtection() {
-        LinkedList<TablutAction> kingsActions = getPawnActions(kingPosition, KING);
-        LinkedList<Coordinates> result = new LinkedList<>();
-        Coordinates winningPos = null;
-        Directions winningDir = null;
-        for(TablutAction ka : kingsActions) {
-            Coordinates dest = ka.coordinates;
-            int escapes = 0;
-            for(Directions dir : getOtherAxisDirections(getDirection(kingPosition, dest))) {
-                if(searchEscape(dest, dir)) {
-                    escapes++;
-                    if(escapes == 2) {
-                        winningPos = dest;
-                        winningDir = dir;
-                        break;
-                    }
-                        
-                }
-            }
-            if(winningPos != null) break;
-        }
-
-        if(winningPos != null) {
-            boolean row = winningDir == Directions.UP || winningDir == Directions.DOWN;
-            for(int i = 0; i < BOARD_SIZE; i++)
-                result.add(new Coordinates(row ? i : winningPos.row, row ? winningPos.column : i));
-        }
-        return result;
-    }
-
-    private LinkedList<Coordinates> getWhiteProtection() {
-        int r = kingPosition.row;
-        int c = kingPosition.column;
-        LinkedList<Coordinates> result = new LinkedList<>();
-        Function<Coordinates, Boolean> condition = (Coordinates coord) -> getValue(pawns, coord) == BLACK;
-        Coordinates[] empties = new Coordinates[Directions.values().length];
-        int blockers = 1;
-        if(isEarlyGame() || isKingNearCitadel())
-            blockers = 3;
-
-        if(isBlocker(r + 1, c, BLACK))  
-            empties[getDirection(kingPosition, new Coordinates(r + 1, c)).value] = new Coordinates(r - 1, c);
-        if(isBlocker(r - 1, c, BLACK)) 
-            empties[getDirection(kingPosition, new Coordinates(r - 1, c)).value] = new Coordinates(r + 1, c);
-        if(isBlocker(r, c + 1, BLACK))
-            empties[getDirection(kingPosition, new Coordinates(r, c + 1)).value] = new Coordinates(r, c - 1);
-        if(isBlocker(r, c - 1, BLACK))
-            empties[getDirection(kingPosition, new Coordinates(r, c - 1)).value] = new Coordinates(r, c + 1);
-        int i = 0;
-        for(Coordinates coord : empties)
-            if(coord != null)
-                i++;
-        if(i < blockers)
-            return result;
-        for(Directions dir : Directions.values()) {
-            if(empties[dir.value] != null && getValue(pawns, empties[dir.value]) == EMPTY) {
-                for(Directions d : getOtherDirections(dir)) {
-                    Coordinates enemyPos = searchByDirection(empties[dir.value], d, condition);
-                    if(enemyPos != null) {
-                        if(result.isEmpty())
-                            result = insideCoordinates(empties[dir.value], enemyPos);
-                        else {
-                            result = new LinkedList<>();
-                            result.add(empties[dir.value]);
-                            return result;
-                        }
-                    }
-                }
-                if(!result.isEmpty())
-                    return result;
-            }
-        }
-        return result;
-    }
-
-    private boolean willBeCaptured(TablutAction action) {
-        makeTemporaryAction(action);
-        int r = action.coordinates.row;
-        int c = action.coordinates.column;
-        byte enemy = action.pawn.getPawnType() == BLACK ? WHITE : BLACK;
-        Function<Coordinates, Boolean> condition = (Coordinates coord) -> isEnemy(getValue(pawns, coord), action.pawn.getPawnType());
-        Coordinates[] empties = new Coordinates[Directions.values().length];
-
-        if(isBlocker(r + 1, c, enemy) && r - 1 >= 0)  
-            empties[getDirection(action.coordinates, new Coordinates(r + 1, c)).value] = new Coordinates(r - 1, c);
-        if(isBlocker(r - 1, c, enemy) && r + 1 < BOARD_SIZE) 
-            empties[getDirection(action.coordinates, new Coordinates(r - 1, c)).value] = new Coordinates(r + 1, c);
-        if(isBlocker(r, c + 1, enemy) && c - 1 >= 0)
-            empties[getDirection(action.coordinates, new Coordinates(r, c + 1)).value] = new Coordinates(r, c - 1);
-        if(isBlocker(r, c - 1, enemy) && c + 1 < BOARD_SIZE)
-            empties[getDirection(action.coordinates, new Coordinates(r, c - 1)).value] = new Coordinates(r, c + 1);
-
-        for(Directions dir : Directions.values()) {
-            if(empties[dir.value] != null && getValue(pawns, empties[dir.value]) == EMPTY) {
-                for(Directions d : getOtherDirections(dir)) {
-                    Coordinates enemyPos = searchByDirection(empties[dir.value], d, condition);
-                    if(enemyPos != null)  {
-                        undoTemporaryAction(action);
-                        return true;
-                    }
-                }
-            }
-        }
-        undoTemporaryAction(action);
-        return false;
-    }
-
-    private boolean willKingBeCaptured(TablutAction action) {
-        makeTemporaryAction(action);
-        int r = kingPosition.row;
-        int c = kingPosition.column;
-        Function<Coordinates, Boolean> condition = (Coordinates coord) -> getValue(pawns, coord) == BLACK;
-        Coordinates[] empties = new Coordinates[Directions.values().length];
-        int blockers = 1;
-        if(isEarlyGame() || isKingNearCitadel())
-            blockers = 3;
-
-        if(isBlocker(r + 1, c, BLACK) && r - 1 >= 0)  
-            empties[getDirection(kingPosition, new Coordinates(r + 1, c)).value] = new Coordinates(r - 1, c);
-        if(isBlocker(r - 1, c, BLACK) && r + 1 < BOARD_SIZE) 
-            empties[getDirection(kingPosition, new Coordinates(r - 1, c)).value] = new Coordinates(r + 1, c);
-        if(isBlocker(r, c + 1, BLACK) && c - 1 >= 0)
-            empties[getDirection(kingPosition, new Coordinates(r, c + 1)).value] = new Coordinates(r, c - 1);
-        if(isBlocker(r, c - 1, BLACK) && c + 1 < BOARD_SIZE)
-            empties[getDirection(kingPosition, new Coordinates(r, c - 1)).value] = new Coordinates(r, c + 1);
-        int i = 0;
-        for(Coordinates coord : empties) {
-            if(coord != null) {
-                i++;
-            }
-        }
-        
-        if(i >= blockers) {
-            for(Directions dir : Directions.values()) {
-                if(empties[dir.value] != null && getValue(pawns, empties[dir.value]) == EMPTY) {
-                    for(Directions d : getOtherDirections(dir)) {
-                        Coordinates enemyPos = searchByDirection(empties[dir.value], d, condition);
-                        if(enemyPos != null)  {
-                            undoTemporaryAction(action);
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        undoTemporaryAction(action);
-        return false;
-    }
-
-    private LinkedList<Coordinates> insideCoordinates(Coordinates c1, Coordinates c2) {
-        LinkedList<Coordinates> result = new LinkedList<>();
-        if(c1.equals(c2))
-            return result;
-        result.add(c1);
-        Directions dir = getDirection(c1, c2);
-        boolean row = dir == Directions.UP || dir == Directions.DOWN ;
-        int step = dir == Directions.UP || dir == Directions.LEFT ? -1: 1;
-        for(int i = row ? c1.row + step : c1.column + step; row ? c2.row != i : c2.column != i ; i += step) 
-            result.add(new Coordinates(row ? i : c1.row, row ? c1.column : i));
-        return result;
-    }
-
-    private Coordinates searchByDirection(Coordinates pos, Directions direction, Function<Coordinates, Boolean> condition) {
-        int row = pos.row;
-        int column = pos.column;
-        Coordinates coord = new Coordinates(row, column);
-        boolean camp = false, citadel = false;
-        int step = direction == Directions.UP || direction == Directions.LEFT ? -1 : 1;
-        for (int i = (direction == Directions.UP || direction == Directions.DOWN ? row: column); step > 0
-                ? i < BOARD_SIZE : i >= 0; i += step) {
-            if (direction == Directions.UP || direction == Directions.DOWN)
-                coord.row = i;
-            else
-                coord.column = i;
-            if (getValue(board, coord) == CAMP)
-                camp = true;
-            else if (getValue(board, coord) == CITADEL)
-                citadel = true;
-            else if ((getValue(board, coord) == EMPTY || getValue(board, coord) == ESCAPE) && (camp || citadel))
-                break;
-            if (condition.apply(coord)) {
-                return coord;
-            }
-            if (getValue(pawns, coord) != EMPTY) {
-                break;
-            }
-        }
-        return null;
-    }
-
-
-    private boolean isPreventingLoose(TablutAction action, TablutAction kingAction, LinkedList<Coordinates> toProtect) {
-        byte player = action.pawn.getPawnType();
-
-        if (player == BLACK && kingAction != null) {
-            int row = action.coordinates.row;
-            int column = action.coordinates.column;
-            int kre = kingAction.coordinates.row;
-            int krk = kingAction.pawn.position.row;
-            int kce = kingAction.coordinates.column;
-            int kck = kingAction.pawn.position.column;
-            if (row == krk && ((column > kck && column <= kce) || (column < kck && column >= kce)))
-                return true;
-            if (column == kck && ((row > krk && row <= kre) || (row < krk && row >= kre)))
-                return true;
-        }
-        else if(player == BLACK && !toProtect.isEmpty()) {
-            for(Coordinates c : toProtect) {
-                if(action.coordinates.equals(c)) {
-                    return true;
-                }
-            }
-        }
-        else if(player == WHITE && !toProtect.isEmpty() && !willKingBeCaptured(action)) {
-            if(!action.getCaptured().isEmpty())
-                return true;
-            for(Coordinates c : toProtect) {
-                if(action.coordinates.equals(c)) {
-                    return true;
-                }
-            }
-        }
-        else if(player == KING && !toProtect.isEmpty() && !willKingBeCaptured(action))
-            return true;
-        return false;
-    }
-
-    private boolean isWin(TablutAction action) {
-        byte player = action.pawn.getPawnType();
-        if (player == BLACK) {
-            for (Capture capture : action.getCaptured())
-                if (capture.getCaptured().getPawnType() == KING)
-                    return true;
-        } else {
-            if (player == KING && isOnPosition(action.coordinates, ESCAPE))
-                return true;
-            return blackPawns - action.getCaptured().size() == 0;
-        }
-        return false;
-    }
-
-    public LinkedList<TablutAction> getLegalActions() {
-        if (blackWin || whiteWin || draw)
-            return new LinkedList<TablutAction>();
-        return getLegalActions(this.playerTurn);
-    }
-
-    public LinkedList<TablutAction> getLegalActions(byte player) {
-        LinkedList<TablutAction> actions = new LinkedList<>();
-        for(int i = 0; i < BOARD_SIZE; i++) 
-            for(int j = 0; j < BOARD_SIZE; j++)
-                if(pawns[i][j] == player || (player == WHITE && pawns[i][j] == KING))
-                    actions.addAll(getPawnActions(new Coordinates(i, j), pawns[i][j]));
-        return actions;
-    }
-
-    private LinkedList<TablutAction> searchActions(Coordinates coord, byte pawn, int step, boolean row) {
-        LinkedList<TablutAction> actions = new LinkedList<>();
-        for (int i = (row ? coord.row : coord.column) + step; (step > 0 ? i < BOARD_SIZE : i >= 0); i += step) {
-            TablutAction action;
-            Coordinates c = new Coordinates(row ? i : coord.row, !row ? i : coord.column);
-            action = new TablutAction(c, new Pawn(pawn, coord));
-            if (!isLegal(action))
-                break;
-            Capture captured;
-            captured = getCaptured(c, pawn, c.row + 2, c.column);
-            if (captured != null) {
-                action.addCapture(captured);
-            }
-            captured = getCaptured(c, pawn, c.row - 2, c.column);
-            if (captured != null) {
-                action.addCapture(captured);
-            }
-            captured = getCaptured(c, pawn, c.row, c.column + 2);
-            if (captured != null) {
-                action.addCapture(captured);
-            }
-            captured = getCaptured(c, pawn, c.row, c.column - 2);
-            if (captured != null) {
-                action.addCapture(captured);
-            }
-            actions.add(action);
-        }
-        return actions;
-    }
-
-    private boolean isLegal(TablutAction action) {
-        int nextRow = action.coordinates.row;
-        int nextColumn = action.coordinates.column;
-        int row = action.pawn.position.row;
-        int column = action.pawn.position.column;
-        byte pawn = action.pawn.getPawnType();
-        return pawns[nextRow][nextColumn] == EMPTY
-                && (board[nextRow][nextColumn] == EMPTY || board[nextRow][nextColumn] == ESCAPE
-                        || (board[nextRow][nextColumn] == CAMP && board[row][column] == CAMP && pawn == BLACK));
-    }
-
-    public void makeAction(TablutAction action) {
-        Coordinates pawnPosition = action.pawn.position;
-        Coordinates nextPosition = action.coordinates;
-        byte pawn = action.pawn.getPawnType();
-        if (firstMove)
-            firstAction = action;
-
-        pawns[pawnPosition.row][pawnPosition.column] = EMPTY;
-        pawns[nextPosition.row][nextPosition.column] = pawn;
-        if (pawn == KING) {
-            kingPosition = nextPosition;
-        }
-        if (pawn == KING && isOnPosition(nextPosition, ESCAPE)) {
-            whiteWin = true;
-        }
-        LinkedList<Capture> captures = action.getCaptured();
-        if (!captures.isEmpty()) {
-            this.drawConditions = new LinkedList<>();
-            for (Capture capture : captures) {
-                if (pawns[capture.getCaptured().position.row][capture.getCaptured().position.column] == KING)
-                    blackWin = true;
-                pawns[capture.getCaptured().position.row][capture.getCaptured().position.column] = EMPTY;
-                if (playerTurn == WHITE) {
-                    blackPawns--;
-                } else
-                    whitePawns--;
-            }
-        } else {
-            checkDraw();
-        }
-        this.drawConditions.add(this);
-        this.previousAction = action;
-        if (this.playerTurn == WHITE)
-            this.playerTurn = BLACK;
-        else
-            this.playerTurn = WHITE;
-        
-        
-    }
-
-    public void makeTemporaryAction(TablutAction action) {
-        if(action.pawn.getPawnType() == KING)
-            kingPosition = action.coordinates;
-        pawns[action.pawn.position.row][action.pawn.position.column] = EMPTY;
-        pawns[action.coordinates.row][action.coordinates.column] = action.pawn.getPawnType();
-        for (Capture capture : action.getCaptured()) {
-            pawns[capture.getCaptured().position.row][capture.getCaptured().position.column] = EMPTY;
-        }
-    }
-
-    public void undoTemporaryAction(TablutAction action) {
-        if(action.pawn.getPawnType() == KING)
-            kingPosition = action.pawn.position;
-        pawns[action.coordinates.row][action.coordinates.column] = EMPTY;
-        pawns[action.pawn.position.row][action.pawn.position.column] = action.pawn.getPawnType();
-        for (Capture capture : action.getCaptured()) {
-            pawns[capture.getCaptured().position.row][capture.getCaptured().position.column] = capture.getCaptured()
-                    .getPawnType();
-        }
-    }
-
-    private void checkDraw() {
-        for (TablutState state : drawConditions) {
-            if (state.equals(this)) {
-                draw = true;
-                break;
-            }
-        }
-    }
-
-    private Capture getCaptured(Coordinates position, byte pawn, int row, int column) {
-        if (!isBlocker(row, column, pawn))
-            return null;
-        Capture captured = null;
-        if (row == position.row)
-            if (column > position.column)
-                captured = new Capture(new Pawn(pawns[row][column - 1], new Coordinates(row, column - 1)));
-            else
-                captured = new Capture(new Pawn(pawns[row][column + 1], new Coordinates(row, column + 1)));
-        else if (column == position.column)
-            if (row > position.row)
-                captured = new Capture(new Pawn(pawns[row - 1][column], new Coordinates(row - 1, column)));
-            else
-                captured = new Capture(new Pawn(pawns[row + 1][column], new Coordinates(row + 1, column)));
-        else
-            return null;
-        if (!isEnemy(pawns[captured.getCaptured().position.row][captured.getCaptured().position.column], pawn))
-            return null;
-
-        if (pawns[captured.getCaptured().position.row][captured.getCaptured().position.column] == KING
-                && !kingCaptured(captured.getCaptured().position, position))
-            return null;
-        return captured;
-    }
-
-    private boolean isBlocker(int row, int column, byte pawn) {
-        if(row < 0 || row >= BOARD_SIZE || column < 0 || column >= BOARD_SIZE)
-            return false;
-        byte blocker = pawns[row][column];
-        if (blocker == KING)
-            blocker = WHITE;
-        if (pawn == KING)
-            pawn = WHITE;
-        byte cell = board[row][column];
-        if (pawn == blocker || cell == CITADEL)
-            return true;
-        if (cell == CAMP) {
-            if ((row == 0 && column == 4) || (row == 4 && column == 0) || (row == BOARD_SIZE - 1 && column == 4)
-                    || (row == 4 && column == BOARD_SIZE - 1)) {
-                return false;
-            }
-            return true;
-        }
-        return false;
-    }
-
-    public boolean isBoardBlocker(Coordinates blocker) {
-        byte cell = getValue(board, blocker);
-        int row = blocker.row;
-        int column = blocker.column;
-        if (cell == CITADEL)
-            return true;
-        if (cell == CAMP) {
-            if ((row == 0 && column == 4) || (row == 4 && column == 0) || (row == BOARD_SIZE - 1 && column == 4)
-                    || (row == 4 && column == BOARD_SIZE - 1)) {
-                return false;
-            }
-            return true;
-        }
-        return false;
-    }
-
-    private boolean isEnemy(byte enemy, byte pawn) {
-        if (enemy == EMPTY || pawn == EMPTY)
-            return false;
-        if (enemy == KING)
-            enemy = WHITE;
-        if (pawn == KING)
-            pawn = WHITE;
-        return pawn != enemy;
-    }
-
-    private boolean kingCaptured(Coordinates captured, Coordinates emptyPos) {
-        int r = captured.row;
-        int c = captured.column;
-        if (r < 3 || r > 5 || c < 3 || c > 5)
-            return true;
-        boolean result = true;
-        pawns[emptyPos.row][emptyPos.column] = BLACK;
-        if (board[r][c] == CITADEL)
-            result = pawns[r + 1][c] == BLACK && pawns[r - 1][c] == BLACK && pawns[r][c + 1] == BLACK
-                    && pawns[r][c - 1] == BLACK;
-        else if (board[r + 1][c] == CITADEL)
-            result = pawns[r - 1][c] == BLACK && pawns[r][c + 1] == BLACK && pawns[r][c - 1] == BLACK;
-        else if (board[r - 1][c] == CITADEL)
-            result = pawns[r + 1][c] == BLACK && pawns[r][c + 1] == BLACK && pawns[r][c - 1] == BLACK;
-        else if (board[r][c + 1] == CITADEL)
-            result = pawns[r + 1][c] == BLACK && pawns[r - 1][c] == BLACK && pawns[r][c - 1] == BLACK;
-        else if (board[r][c - 1] == CITADEL)
-            result = pawns[r + 1][c] == BLACK && pawns[r - 1][c] == BLACK && pawns[r][c + 1] == BLACK;
-        pawns[emptyPos.row][emptyPos.column] = EMPTY;
-        return result;
-    }
-
-    private boolean isOnPosition(Coordinates coordinates, byte position) {
-        return board[coordinates.row][coordinates.column] == position;
-    }
-
-    public boolean isWhiteWin() {
-        return whiteWin;
-    }
-
-    public boolean isBlackWin() {
-        return blackWin;
-    }
-
-    public boolean isDraw() {
-        return draw;
-    }
-
-    public byte[][] getPawns() {
-        return pawns;
-    }
-
-    public byte getPlayerTurn() {
-        return this.playerTurn;
-    }
-
-    public LinkedList<TablutState> getDrawConditions() {
-        return this.drawConditions;
-    }
-
-    public int getBlackPawns() {
-        return blackPawns;
-    }
-
-    public int getWhitePawns() {
-        return whitePawns;
-    }
-
-    public boolean isFirstMove() {
-        return firstMove;
-    }
-
-    public void setFirstMove(boolean firstMove) {
-        this.firstMove = firstMove;
-    }
-
-    public TablutAction getFirstAction() {
-        return firstAction;
-    }
-
-    public void setPreviousAction(TablutAction previousAction) {
-        this.previousAction = previousAction;
-    }
-
-    public TablutAction getPreviousAction() {
-        return previousAction;
-    }
-
-    public Quadrant getQuadrant(Coordinates c) {
-        for(Quadrant q : Quadrant.quadrants)
-            if(q.contains(c))
-                return q;
-        return null;
-    }
+package domain;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+import utils.IntArrayList;
+import utils.WeightedSampler;
+
+public class TablutState {
+    public static final byte EMPTY = 0;
+    public static final byte WHITE = 1;
+    public static final byte BLACK = 2;
+    public static final byte KING = 3;
+    public static final byte ESCAPE = 1;
+    public static final byte CAMP = 2;
+    public static final byte CITADEL = 3;
+
+    public static final int BOARD_SIZE = 9;
+
+    public static final int WHITE_PAWNS = 8;
+    public static final int BLACK_PAWNS = 16;
+
+    private static final int ALL_MOVES = 0;
+    private static final int CAPTURE_MOVES = 1;
+    private static final int QUIET_MOVES = 2;
+    private static final int TACTICS_PLIES = 3;
+
+    // white side including the king, so every side set can be scanned for its movers directly
+    private long whiteLo;
+    private long whiteHi;
+    private long blackLo;
+    private long blackHi;
+    private long occupiedLo;
+    private long occupiedHi;
+    private long rotatedLo;
+    private long rotatedHi;
+    private int kingSquare = BitBoard.NONE;
+    private long boardKey;
+    private byte playerTurn;
+
+    private boolean whiteWin = false;
+    private boolean blackWin = false;
+    private boolean draw = false;
+    private DrawHistory drawConditions;
+
+    private boolean firstMove = false;
+    private TablutAction firstAction = null;
+    private int previousMove = Move.NONE;
+
+    private enum Directions {
+        UP(0), RIGHT(1), DOWN(2), LEFT(3);
+
+        private int value;
+
+        private Directions(int value) {
+            this.value = value;
+        }
+    }
+
+    public TablutState(byte playerTurn) {
+        this.playerTurn = playerTurn;
+        this.firstMove = true;
+        initPawns();
+        this.drawConditions = DrawHistory.EMPTY.add(boardKey);
+    }
+
+    public TablutState(byte playerTurn, byte[][] pawns) {
+        setPawns(pawns);
+        this.playerTurn = playerTurn;
+        this.firstMove = false;
+        this.drawConditions = DrawHistory.EMPTY.add(boardKey);
+    }
+
+    public TablutState(byte[][] pawns, byte playerTurn, boolean firstMove, TablutAction firstAction, DrawHistory drawConditions) {
+        setPawns(pawns);
+        this.playerTurn = playerTurn;
+        this.drawConditions = drawConditions.contains(boardKey) ? drawConditions : drawConditions.add(boardKey);
+        this.firstMove = firstMove;
+        this.firstAction = firstAction;
+        initState();
+    }
+
+    private TablutState(TablutState state) {
+        this.whiteLo = state.whiteLo;
+        this.whiteHi = state.whiteHi;
+        this.blackLo = state.blackLo;
+        this.blackHi = state.blackHi;
+        this.occupiedLo = state.occupiedLo;
+        this.occupiedHi = state.occupiedHi;
+        this.rotatedLo = state.rotatedLo;
+        this.rotatedHi = state.rotatedHi;
+        this.kingSquare = state.kingSquare;
+        this.boardKey = state.boardKey;
+        this.playerTurn = state.getPlayerTurn();
+        this.draw = state.isDraw();
+        this.blackWin = state.isBlackWin();
+        this.whiteWin = state.isWhiteWin();
+        this.drawConditions = state.drawConditions;
+        this.firstMove = state.isFirstMove();
+        this.firstAction = state.getFirstAction();
+        this.previousMove = state.previousMove;
+    }
+
+    private void setPawns(byte[][] pawns) {
+        whiteLo = whiteHi = blackLo = blackHi = 0;
+        occupiedLo = occupiedHi = rotatedLo = rotatedHi = 0;
+        kingSquare = BitBoard.NONE;
+        for (int i = 0; i < BOARD_SIZE; i++)
+            for (int j = 0; j < BOARD_SIZE; j++)
+                setPawn(BitBoard.square(i, j), pawns[i][j]);
+    }
+
+    // Bare position without history, as enumerated by the endgame tablebase generator
+    void setPosition(byte playerTurn, int king, int[] whites, int whiteCount, int[] blacks, int blackCount) {
+        whiteLo = whiteHi = blackLo = blackHi = 0;
+        occupiedLo = occupiedHi = rotatedLo = rotatedHi = 0;
+        kingSquare = BitBoard.NONE;
+        boardKey = 0;
+        setPawn(king, KING);
+        for (int i = 0; i < whiteCount; i++)
+            setPawn(whites[i], WHITE);
+        for (int i = 0; i < blackCount; i++)
+            setPawn(blacks[i], BLACK);
+        this.playerTurn = playerTurn;
+        this.whiteWin = false;
+        this.blackWin = false;
+        this.draw = false;
+        this.firstMove = false;
+        this.firstAction = null;
+        this.previousMove = Move.NONE;
+        this.drawConditions = DrawHistory.EMPTY.add(boardKey);
+        initState();
+    }
+
+    public byte getPawn(int row, int column) {
+        return getPawn(BitBoard.square(row, column));
+    }
+
+    public byte getPawn(Coordinates c) {
+        return getPawn(BitBoard.square(c));
+    }
+
+    byte getPawn(int square) {
+        if (square == kingSquare)
+            return KING;
+        if (BitBoard.contains(whiteLo, whiteHi, square))
+            return WHITE;
+        if (BitBoard.contains(blackLo, blackHi, square))
+            return BLACK;
+        return EMPTY;
+    }
+
+    private void setPawn(int square, byte pawn) {
+        byte previous = getPawn(square);
+        if (previous != EMPTY)
+            boardKey ^= Zobrist.pawn(previous, square);
+        if (pawn != EMPTY)
+            boardKey ^= Zobrist.pawn(pawn, square);
+        long lo = BitBoard.low(square);
+        long hi = BitBoard.high(square);
+        int transposed = BitBoard.transpose(square);
+        whiteLo &= ~lo;
+        whiteHi &= ~hi;
+        blackLo &= ~lo;
+        blackHi &= ~hi;
+        occupiedLo &= ~lo;
+        occupiedHi &= ~hi;
+        rotatedLo &= ~BitBoard.low(transposed);
+        rotatedHi &= ~BitBoard.high(transposed);
+        if (kingSquare == square)
+            kingSquare = BitBoard.NONE;
+        if (pawn != EMPTY) {
+            occupiedLo |= lo;
+            occupiedHi |= hi;
+            rotatedLo |= BitBoard.low(transposed);
+            rotatedHi |= BitBoard.high(transposed);
+        }
+        if (pawn == WHITE || pawn == KING) {
+            whiteLo |= lo;
+            whiteHi |= hi;
+        } else if (pawn == BLACK) {
+            blackLo |= lo;
+            blackHi |= hi;
+        }
+        if (pawn == KING)
+            kingSquare = square;
+    }
+
+    private boolean isOccupied(int square) {
+        return BitBoard.contains(occupiedLo, occupiedHi, square);
+    }
+
+    int getKingSquare() {
+        return kingSquare;
+    }
+
+    long getWhiteLo() {
+        return whiteLo;
+    }
+
+    long getWhiteHi() {
+        return whiteHi;
+    }
+
+    long getBlackLo() {
+        return blackLo;
+    }
+
+    long getBlackHi() {
+        return blackHi;
+    }
+
+    long getOccupiedLo() {
+        return occupiedLo;
+    }
+
+    long getOccupiedHi() {
+        return occupiedHi;
+    }
+
+    int getRowOccupancy(int row) {
+        return BitBoard.rowBits(occupiedLo, occupiedHi, row);
+    }
+
+    int getColumnOccupancy(int column) {
+        return BitBoard.rowBits(rotatedLo, rotatedHi, column);
+    }
+
+    int getDestinations(int square, int direction) {
+        boolean campMover = BitBoard.contains(blackLo, blackHi, square) && BitBoard.contains(BitBoard.CAMPS, square);
+        int occupancy = BitBoard.isVertical(direction) ? getColumnOccupancy(BitBoard.column(square))
+                : getRowOccupancy(BitBoard.row(square));
+        return MoveTables.getDestinations(square, campMover, direction, occupancy);
+    }
+
+    int getWhiteRow(int row) {
+        return BitBoard.rowBits(whiteLo, whiteHi, row);
+    }
+
+    int getWhiteColumn(int column) {
+        return BitBoard.columnBits(whiteLo, whiteHi, column);
+    }
+
+    public static byte[][] initBoard() {
+        byte[][] board = new byte[BOARD_SIZE][BOARD_SIZE];
+        for (int i = 1; i < BOARD_SIZE - 1; i++) {
+            if (i < 3 || i > 5) {
+                board[0][i] = ESCAPE;
+                board[i][0] = ESCAPE;
+                board[BOARD_SIZE - 1][i] = ESCAPE;
+                board[i][BOARD_SIZE - 1] = ESCAPE;
+            } else {
+                board[0][i] = CAMP;
+                board[i][0] = CAMP;
+                board[BOARD_SIZE - 1][i] = CAMP;
+                board[i][BOARD_SIZE - 1] = CAMP;
+            }
+        }
+        board[1][4] = CAMP;
+        board[4][1] = CAMP;
+        board[BOARD_SIZE - 2][4] = CAMP;
+        board[4][BOARD_SIZE - 2] = CAMP;
+        board[4][4] = CITADEL;
+        return board;
+    }
+
+    private void initState() {
+        if (kingSquare == BitBoard.NONE)
+            blackWin = true;
+        else if (isOnPosition(kingSquare, ESCAPE))
+            whiteWin = true;
+    }
+
+    public byte[][] getBoard() {
+        return getPawns();
+    }
+
+    public void initPawns() {
+        whiteLo = whiteHi = blackLo = blackHi = 0;
+        occupiedLo = occupiedHi = rotatedLo = rotatedHi = 0;
+        kingSquare = BitBoard.NONE;
+        for (int i = 1; i < BOARD_SIZE - 1; i++) {
+            if (i < 3) {
+                setPawn(BitBoard.square(4, i + 1), WHITE);
+                setPawn(BitBoard.square(i + 1, 4), WHITE);
+                setPawn(BitBoard.square(4, BOARD_SIZE - i - 2), WHITE);
+                setPawn(BitBoard.square(BOARD_SIZE - i - 2, 4), WHITE);
+            } else if (i <= 5) {
+                setPawn(BitBoard.square(0, i), BLACK);
+                setPawn(BitBoard.square(i, 0), BLACK);
+                setPawn(BitBoard.square(BOARD_SIZE - 1, i), BLACK);
+                setPawn(BitBoard.square(i, BOARD_SIZE - 1), BLACK);
+            }
+        }
+        setPawn(BitBoard.square(1, 4), BLACK);
+        setPawn(BitBoard.square(4, 1), BLACK);
+        setPawn(BitBoard.square(BOARD_SIZE - 2, 4), BLACK);
+        setPawn(BitBoard.square(4, BOARD_SIZE - 2), BLACK);
+        setPawn(BitBoard.CITADEL, KING);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int square = 0; square < BitBoard.SQUARES; square++) {
+            byte pawn = getPawn(square);
+            if (pawn == BLACK)
+                result.append('B');
+            else if (pawn == WHITE)
+                result.append('W');
+            else if (pawn == KING)
+                result.append('K');
+            else if (isOnPosition(square, CITADEL))
+                result.append('T');
+            else if (isOnPosition(square, CAMP))
+                result.append('X');
+            else
+                result.append('-');
+            if (BitBoard.column(square) == BOARD_SIZE - 1)
+                result.append('\n');
+        }
+        result.append('\n');
+        return result.toString();
+    }
+
+    @Override
+    public TablutState clone() {
+        return new TablutState(this);
+    }
+
+    public TablutState copySimulation() {
+        return new TablutState(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (this.getClass() != obj.getClass())
+            return false;
+        TablutState state = (TablutState) obj;
+        return whiteLo == state.whiteLo && whiteHi == state.whiteHi && blackLo == state.blackLo
+                && blackHi == state.blackHi && kingSquare == state.kingSquare;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (boardKey ^ (boardKey >>> 32));
+    }
+
+    public long getKey() {
+        return boardKey ^ Zobrist.turn(playerTurn);
+    }
+
+    public long getBoardKey() {
+        return boardKey;
+    }
+
+    public void printList(LinkedList<TablutAction> l) {
+        for (TablutAction a : l)
+            System.out.println(a.toString());
+    }
+
+    private Directions getDirection(Coordinates prev, Coordinates next) {
+        if (prev.row == next.row) {
+            if (prev.column > next.column)
+                return Directions.LEFT;
+            else
+                return Directions.RIGHT;
+        } else {
+            if (prev.row > next.row)
+                return Directions.UP;
+            else
+                return Directions.DOWN;
+        }
+    }
+
+    public byte getValue(byte[][] b, Coordinates c) {
+        return b[c.row][c.column];
+    }
+
+    public ArrayList<SimulateAction> getSimulatingActions(int[] weights) {
+        IntArrayList moves = new IntArrayList();
+        IntArrayList probs = new IntArrayList();
+        ArrayList<SimulateAction> result = new ArrayList<>();
+        if (whiteWin || blackWin || draw)
+            return result;
+        getSimulatingMoves(weights, moves, probs);
+        for (int i = 0; i < moves.size(); i++)
+            result.add(new SimulateAction(toAction(moves.get(i)), probs.get(i)));
+        return result;
+    }
+
+    // Cheap playout policy: a winning move when there is one, otherwise every legal move weighted
+    // only by whether it captures. Opening moves still go through the heavy policy.
+    public void getLightMoves(int[] weights, IntArrayList result, IntArrayList probs) {
+        if (firstMove) {
+            getSimulatingMoves(weights, result, probs);
+            return;
+        }
+        result.clear();
+        probs.clear();
+        if (whiteWin || blackWin || draw)
+            return;
+        int winningMove = getWinningMove();
+        if (winningMove != Move.NONE) {
+            result.add(winningMove);
+            probs.add(1);
+            return;
+        }
+        getLegalMoves(result);
+        if (result.isEmpty()) {
+            if (playerTurn == WHITE)
+                blackWin = true;
+            else
+                whiteWin = true;
+            return;
+        }
+        for (int i = 0; i < result.size(); i++)
+            probs.add(Move.isCapture(result.get(i)) ? weights[Weights.CAPTURE.value()]
+                    : weights[Weights.STANDARD_ACTION.value()]);
+    }
+
+    public void getSimulatingMoves(int[] weights, IntArrayList result, IntArrayList probs) {
+        result.clear();
+        probs.clear();
+        if (whiteWin || blackWin || draw)
+            return;
+        int winningMove = getWinningMove();
+        if (winningMove == Move.NONE && !firstMove)
+            winningMove = playerTurn == WHITE ? KingTactics.findEscape(this, TACTICS_PLIES)
+                    : KingTactics.findKingCapture(this, TACTICS_PLIES);
+        if (winningMove != Move.NONE) {
+            result.add(winningMove);
+            probs.add(1);
+            return;
+        }
+        MoveBuffers buffers = MoveBuffers.get();
+        IntArrayList actions = buffers.moves;
+        getLegalMoves(actions);
+        IntArrayList toProtect = buffers.protection;
+        getProtectionSquares(toProtect);
+        boolean loosing = false;
+        int kingMove = Move.NONE;
+        if (actions.isEmpty()) {
+            if (playerTurn == WHITE)
+                blackWin = true;
+            else
+                whiteWin = true;
+            return;
+        }
+        if (playerTurn == BLACK)
+            kingMove = getEscapeMove();
+        if (firstMove) {
+            if (playerTurn == WHITE)
+                result.add(toMove(whiteOpening()));
+            else {
+                result.add(toMove(blackOpening(firstAction)));
+                firstMove = false;
+            }
+            probs.add(1);
+            return;
+        }
+
+        for (int i = 0; i < actions.size(); i++) {
+            int action = actions.get(i);
+            if (isWin(action)) {
+                result.clear();
+                probs.clear();
+                result.add(action);
+                probs.add(1);
+                break;
+            } else if (isPreventingLoose(action, kingMove, toProtect)) {
+                if (!loosing) {
+                    result.clear();
+                    probs.clear();
+                }
+                result.add(action);
+                probs.add(1);
+                loosing = true;
+            }
+        }
+        if (!result.isEmpty())
+            return;
+
+        boolean toMiddleGame = false;
+        BoardSet boardSet = null;
+        if(!isEarlyGame()) {
+            int kingRow = BitBoard.row(kingSquare);
+            int kingColumn = BitBoard.column(kingSquare);
+            if(kingRow == 4 || kingColumn == 4)
+                boardSet = Side.getSideFromMiddle(kingRow, kingColumn);
+            else 
+                boardSet = Quadrant.getQuadrant(kingRow, kingColumn);
+        }
+        for(int i = 0; i < actions.size(); i++) {
+            int action = actions.get(i);
+            byte pawn = Move.pawn(action);
+            int to = Move.to(action);
+            if(Move.isCapture(action) && ((this.playerTurn == BLACK && !isKingCheck(action)) || (this.playerTurn == WHITE && !willKingBeCaptured(action))) && !toMiddleGame) {
+                if(pawn != KING && previousMove != Move.NONE) {
+                    for(int d = BitBoard.UP; d <= BitBoard.LEFT; d++) {
+                        if(Move.captures(action, d) && Move.capturedSquare(action, d) == Move.to(previousMove)) {
+                            result.clear();
+                            probs.clear();
+                            result.add(action);
+                            probs.add(weights[Weights.CAPTURE.value()]);
+                            return;
+                        }
+                    }
+                }
+                result.add(action);
+                probs.add(weights[Weights.CAPTURE.value()]);
+            }
+            else if(pawn == KING) {
+                if(!willKingBeCaptured(action)) {
+                    if(isEarlyGame()) {
+                        if(isKingCovered(action)) {
+                            if(!toMiddleGame) {
+                                result.clear();
+                                probs.clear();
+                            }
+                            result.add(action);
+                            probs.add(weights[Weights.CAPTURE.value()]);
+                            toMiddleGame = true;
+                        }
+                        else if(!toMiddleGame) {
+                            result.add(action);
+                            probs.add(35);
+                        }
+                    }
+                    else if(isKingCheck(action)) {
+                        result.add(action);
+                        probs.add(weights[Weights.KING_CHECK.value()]);
+                    }
+                    else { 
+                        result.add(action);
+                        probs.add(weights[Weights.STANDARD_ACTION.value()]);
+                    }
+                }
+            }
+            else if(pawn == BLACK && !willBeCaptured(action)) {
+                if(!isKingCheck(action)) {
+                    if(isEarlyGame() && !toMiddleGame) {
+                        if(Boards.isBlackCell(to)) {
+                            result.add(action);
+                            probs.add(weights[Weights.STANDARD_ACTION.value()]);
+                        }
+                    }
+                    else {
+                        if(isAttackingKing(action) || isBlockingKing(action)) {
+                            result.add(action);
+                            probs.add(weights[Weights.BLACK_ATTACK.value()]);
+                        }
+                        else {
+                            result.add(action);
+                            probs.add(weights[Weights.STANDARD_ACTION.value()]);
+                        }
+                    }
+                }
+            }
+            else if(pawn == WHITE && !willBeCaptured(action)) {
+                if(!willKingBeCaptured(action)) {
+                    if(isEarlyGame() && !toMiddleGame) {
+                        if(BitBoard.row(to) != 4 && BitBoard.column(to) != 4) {
+                            if(Boards.isValidPositioning(this, Move.from(action), to)) {
+                                result.add(action);
+                                probs.add(weights[Weights.STANDARD_ACTION.value()]);
+                            }
+                        }
+                    }
+                    else {
+                        if(boardSet != null && boardSet.contains(BitBoard.row(to), BitBoard.column(to)) && isToBorder(action)) {
+                            result.add(action);
+                            probs.add(weights[Weights.WHITE_BORDER.value()]);
+                        }
+                        else {
+                            result.add(action);
+                            probs.add(weights[Weights.STANDARD_ACTION.value()]);
+                        }
+                    }
+                }
+            }   
+        }      
+
+        if(result.isEmpty()) {
+            for(int i = 0; i < actions.size(); i++) {
+                result.add(actions.get(i));
+                probs.add(1);
+            }
+        }
+    }
+
+    int getEscapeMove() {
+        if (getOpenEscapes(kingSquare) == 0)
+            return Move.NONE;
+        IntArrayList kingMoves = MoveBuffers.get().kingMoves;
+        kingMoves.clear();
+        getPawnMoves(kingSquare, KING, kingMoves);
+        for (int i = 0; i < kingMoves.size(); i++)
+            if (isOnPosition(Move.to(kingMoves.get(i)), ESCAPE))
+                return kingMoves.get(i);
+        return Move.NONE;
+    }
+
+    private boolean isBlockingKing(int move) {
+        if(Move.pawn(move) != BLACK) 
+            return false;
+        int to = Move.to(move);
+        return BitBoard.row(to) == BitBoard.row(kingSquare) || BitBoard.column(to) == BitBoard.column(kingSquare);
+    } 
+
+    private boolean isKingCovered(int move) {
+        int to = Move.to(move);
+        Side s = Side.getSideFromMiddle(BitBoard.row(to), BitBoard.column(to));
+        int whites = 0;
+        boolean row = BitBoard.row(to) == 4;
+        for(int square = BitBoard.first(whiteLo, whiteHi); square != BitBoard.NONE; square = BitBoard.next(whiteLo, whiteHi, square)) {
+            int i = BitBoard.row(square);
+            int j = BitBoard.column(square);
+            if(square != kingSquare && (row ? j != 4 : i != 4) && s.contains(i, j)) {
+                whites++;
+                if(whites == 3)  {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isAttackingKing(int move) {
+        if(Move.pawn(move) != BLACK || kingSquare == BitBoard.NONE)
+            return false;
+        int to = Move.to(move);
+        for(int d = BitBoard.UP; d <= BitBoard.LEFT; d++)
+            if(BitBoard.neighbour(to, d) == kingSquare)
+                return true;
+        return false;
+    }
+
+    private boolean isToBorder(int move) {
+        int from = Move.from(move);
+        return (BitBoard.row(from) == BitBoard.row(kingSquare) || BitBoard.column(from) == BitBoard.column(kingSquare)) 
+            && BitBoard.isBorder(Move.to(move));
+    }
+
+    public int getOpenEscapes(int square) {
+        return Integer.bitCount(getEscapes(square, false) | getEscapes(square, true));
+    }
+
+    private int getEscapes(int square, boolean vertical) {
+        int occupancy = vertical ? getColumnOccupancy(BitBoard.column(square)) : getRowOccupancy(BitBoard.row(square));
+        return EscapeTables.getEscapes(square, vertical, occupancy);
+    }
+
+    private boolean isKingCheck(int move) {
+        int king = Move.pawn(move) == KING ? Move.to(move) : kingSquare;
+        boolean vertical = !BitBoard.isVertical(Move.direction(move));
+        int line = vertical ? BitBoard.column(king) : BitBoard.row(king);
+        return EscapeTables.getEscapes(king, vertical, getOccupancyAfter(move, vertical, line)) != 0;
+    }
+
+    // Open escape lines of the king once one of its moves is played
+    int getOpenEscapesAfter(int move) {
+        int king = Move.to(move);
+        int row = BitBoard.row(king);
+        int column = BitBoard.column(king);
+        return Integer.bitCount(EscapeTables.getEscapes(king, false, getOccupancyAfter(move, false, row))
+                | EscapeTables.getEscapes(king, true, getOccupancyAfter(move, true, column)));
+    }
+
+    private int getOccupancyAfter(int move, boolean vertical, int line) {
+        int occupancy = vertical ? getColumnOccupancy(line) : getRowOccupancy(line);
+        occupancy &= ~getLineBit(Move.from(move), vertical, line);
+        occupancy |= getLineBit(Move.to(move), vertical, line);
+        for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++)
+            if (Move.captures(move, direction))
+                occupancy &= ~getLineBit(Move.capturedSquare(move, direction), vertical, line);
+        return occupancy;
+    }
+
+    private static int getLineBit(int square, boolean vertical, int line) {
+        if (vertical)
+            return BitBoard.column(square) == line ? 1 << BitBoard.row(square) : 0;
+        return BitBoard.row(square) == line ? 1 << BitBoard.column(square) : 0;
+    }
+
+    public LinkedList<TablutAction> getBestActionFirst() {
+        IntArrayList moves = new IntArrayList();
+        getBestMovesFirst(moves);
+        LinkedList<TablutAction> result = new LinkedList<>();
+        for (int i = 0; i < moves.size(); i++)
+            result.add(toAction(moves.get(i)));
+        return result;
+    }
+
+    public void getBestMovesFirst(IntArrayList result) {
+        result.clear();
+        if (whiteWin || blackWin || draw)
+            return;
+        int winningMove = getWinningMove();
+        if (winningMove != Move.NONE) {
+            result.add(winningMove);
+            return;
+        }
+
+        MoveBuffers buffers = MoveBuffers.get();
+        IntArrayList actions = buffers.moves;
+        getLegalMoves(actions);
+        shuffle(actions);
+        IntArrayList toProtect = buffers.protection;
+        boolean loosing = false;
+        int kingMove = Move.NONE;
+
+        getProtectionSquares(toProtect);
+
+        if (actions.isEmpty()) {
+            if (playerTurn == WHITE)
+                blackWin = true;
+            else
+                whiteWin = true;
+            return;
+        }
+        if (playerTurn == BLACK)
+            kingMove = getEscapeMove();
+        if (firstMove) {
+            if (playerTurn == WHITE)
+                result.add(toMove(whiteOpening()));
+            else {
+                result.add(toMove(blackOpening(firstAction)));
+                firstMove = false;
+            }
+            return;
+        }
+        for (int i = 0; i < actions.size(); i++) {
+            int action = actions.get(i);
+            if (isWin(action)) {
+                result.clear();
+                result.add(action);
+                break;
+            } else if (isPreventingLoose(action, kingMove, toProtect)) {
+                if (!loosing)
+                    result.clear();
+                result.add(action);
+                loosing = true;
+            }
+        }
+        if(!result.isEmpty()) 
+            return;
+
+        for(int i = 0; i < actions.size(); i++) {
+            int action = actions.get(i);
+            if(Move.pawn(action) == KING || Move.isCapture(action))
+                result.add(action);
+        }
+        result.reverse(0, result.size());
+        for(int i = 0; i < actions.size(); i++) {
+            int action = actions.get(i);
+            int to = Move.to(action);
+            if(Move.pawn(action) == KING || Move.isCapture(action))
+                continue;
+            else if(isEarlyGame() && this.playerTurn == WHITE) {
+                if(BitBoard.row(to) != 4 && BitBoard.column(to) != 4) {
+                    if(Boards.isValidPositioning(this, Move.from(action), to))
+                        result.add(action);
+                }
+            }
+            else if(isEarlyGame() && this.playerTurn == BLACK) {
+                if(Boards.isBlackCell(to))
+                    result.add(action);
+            }
+            else {
+                result.add(action);
+            }
+        }    
+        if (result.isEmpty())
+            result.addAll(actions);
+    }
+
+    private static void shuffle(IntArrayList moves) {
+        WeightedSampler random = WeightedSampler.get();
+        for (int i = moves.size() - 1; i > 0; i--)
+            moves.swap(i, random.nextInt(i + 1));
+    }
+
+    private boolean isEarlyGame() {
+        return kingSquare == BitBoard.CITADEL;
+    }
+
+    public TablutAction whiteOpening() {
+        return new TablutAction(new Coordinates(2, 1), new Pawn(WHITE, new Coordinates(2, 4)));
+    }
+
+    public TablutAction blackOpening(TablutAction whiteOpening) {
+        HashMap<TablutAction, TablutAction> responses = new HashMap<>();
+        Coordinates whiteUp = new Coordinates(2, 4);
+        Coordinates whiteDown = new Coordinates(3, 4);
+        responses.put(new TablutAction(new Coordinates(2, 0), new Pawn(WHITE, whiteUp)),
+                new TablutAction(new Coordinates(2, 5), new Pawn(BLACK, new Coordinates(0, 5))));
+        responses.put(new TablutAction(new Coordinates(2, 1), new Pawn(WHITE, whiteUp)),
+                new TablutAction(new Coordinates(2, 5), new Pawn(BLACK, new Coordinates(0, 5))));
+        responses.put(new TablutAction(new Coordinates(2, 2), new Pawn(WHITE, whiteUp)),
+                new TablutAction(new Coordinates(2, 5), new Pawn(BLACK, new Coordinates(0, 5))));
+        responses.put(new TablutAction(new Coordinates(2, 3), new Pawn(WHITE, whiteUp)),
+                new TablutAction(new Coordinates(1, 6), new Pawn(BLACK, new Coordinates(1, 4))));
+        responses.put(new TablutAction(new Coordinates(3, 1), new Pawn(WHITE, whiteDown)),
+                new TablutAction(new Coordinates(3, 4), new Pawn(BLACK, new Coordinates(3, 8))));
+        responses.put(new TablutAction(new Coordinates(3, 2), new Pawn(WHITE, whiteDown)),
+                new TablutAction(new Coordinates(3, 4), new Pawn(BLACK, new Coordinates(3, 8))));
+        responses.put(new TablutAction(new Coordinates(3, 3), new Pawn(WHITE, whiteDown)),
+                new TablutAction(new Coordinates(1, 6), new Pawn(BLACK, new Coordinates(1, 4))));
+
+        if (responses.get(whiteOpening) != null) {
+            return withCaptures(responses.get(whiteOpening));
+        }
+
+        Coordinates position = new Coordinates(whiteOpening.pawn.position.row, whiteOpening.pawn.position.column);
+        Coordinates destination = new Coordinates(whiteOpening.coordinates.row, whiteOpening.coordinates.column);
+
+        boolean swap = false;
+        boolean columnPos = false;
+        if (position.row == 4) {
+            int temp = position.row;
+            position.row = position.column;
+            position.column = temp;
+            swap = true;
+        }
+        if (position.column > 4) {
+            position.column = BOARD_SIZE - 1 - position.column;
+            columnPos = true;
+        }
+        if (position.row > 4) {
+            position.row = BOARD_SIZE - 1 - position.row;
+            columnPos = true;
+        }
+        boolean mirror = true;
+
+        Directions dir = getDirection(whiteOpening.pawn.position, whiteOpening.coordinates);
+        if ((dir == Directions.UP && swap && columnPos) || (dir == Directions.DOWN && swap && !columnPos)
+                || (dir == Directions.LEFT && !swap && !columnPos) || (dir == Directions.RIGHT && !swap && columnPos)) {
+            mirror = false;
+        }
+
+        if(destination.row == whiteOpening.pawn.position.row) 
+            destination.column = 4 - Math.abs(whiteOpening.pawn.position.column - destination.column);
+        else 
+            destination.column = 4 - Math.abs(whiteOpening.pawn.position.row - destination.row);
+        destination.row = position.row;
+
+        TablutAction response = responses.get(new TablutAction(destination, new Pawn(WHITE, position)));
+        Coordinates resPos = response.pawn.position;
+        Coordinates resDest = response.coordinates;
+        if (mirror) {
+            resPos.column = BOARD_SIZE - 1 - resPos.column;
+            resDest.column = BOARD_SIZE - 1 - resDest.column;
+        }
+        if (swap || columnPos) {
+            if (swap) {
+                int temp = resPos.row;
+                resPos.row = resPos.column;
+                resPos.column = temp;
+                temp = resDest.row;
+                resDest.row = resDest.column;
+                resDest.column = temp;
+                if (columnPos) {
+                    resPos.column = BOARD_SIZE - 1 - resPos.column;
+                    resDest.column = BOARD_SIZE - 1 - resDest.column;
+                } else {
+                    resPos.row = BOARD_SIZE - 1 - resPos.row;
+                    resDest.row = BOARD_SIZE - 1 - resDest.row;
+                }
+            } else {
+                resPos.column = BOARD_SIZE - 1 - resPos.column;
+                resPos.row = BOARD_SIZE - 1 - resPos.row;
+                resDest.row = BOARD_SIZE - 1 - resDest.row;
+                resDest.column = BOARD_SIZE - 1 - resDest.column;
+            }
+        }
+        return withCaptures(new TablutAction(resDest, new Pawn(BLACK, resPos)));
+    }
+
+    private TablutAction withCaptures(TablutAction action) {
+        int to = BitBoard.square(action.coordinates);
+        byte pawn = action.pawn.getPawnType();
+        return toAction(Move.encode(BitBoard.square(action.pawn.position), to, pawn, getCaptures(to, pawn)));
+    }
+
+    private boolean isNearCitadel(int square) {
+        int r = BitBoard.row(square);
+        int c = BitBoard.column(square);
+        return (r == 4 && (c == 3 || c == 5)) || (c == 4 && (r == 3 || r == 5));
+    }
+
+    private void getProtectionSquares(IntArrayList result) {
+        result.clear();
+        if(this.playerTurn == WHITE)
+            getWhiteProtection(result);
+        else
+            getBlackProtection(result);
+    }
+
+    private void getBlackProtection(IntArrayList result) {
+        IntArrayList kingMoves = MoveBuffers.get().kingMoves;
+        kingMoves.clear();
+        getPawnMoves(kingSquare, KING, kingMoves);
+        int winningSquare = BitBoard.NONE;
+        boolean vertical = false;
+        for(int i = 0; i < kingMoves.size() && winningSquare == BitBoard.NONE; i++) {
+            int dest = Move.to(kingMoves.get(i));
+            boolean escapeVertical = !BitBoard.isVertical(Move.direction(kingMoves.get(i)));
+            if(Integer.bitCount(getEscapes(dest, escapeVertical)) == 2) {
+                winningSquare = dest;
+                vertical = escapeVertical;
+            }
+        }
+
+        if(winningSquare != BitBoard.NONE) {
+            for(int i = 0; i < BOARD_SIZE; i++)
+                result.add(vertical ? BitBoard.square(i, BitBoard.column(winningSquare)) : BitBoard.square(BitBoard.row(winningSquare), i));
+        }
+    }
+
+    private void getWhiteProtection(IntArrayList result) {
+        int blockers = 1;
+        if(isEarlyGame() || isNearCitadel(kingSquare))
+            blockers = 3;
+        int[] empties = getEmptiesAround(kingSquare, BLACK);
+        int count = 0;
+        for(int empty : empties)
+            if(empty != BitBoard.NONE)
+                count++;
+        if(count < blockers)
+            return;
+        for(int dir = BitBoard.UP; dir <= BitBoard.LEFT; dir++) {
+            int empty = empties[dir];
+            if(empty != BitBoard.NONE && getPawn(empty) == EMPTY) {
+                for(int d = BitBoard.UP; d <= BitBoard.LEFT; d++) {
+                    if(d == dir)
+                        continue;
+                    int enemy = searchByDirection(empty, d, WHITE);
+                    if(enemy != BitBoard.NONE) {
+                        if(result.isEmpty())
+                            insideSquares(empty, enemy, result);
+                        else {
+                            result.clear();
+                            result.add(empty);
+                            return;
+                        }
+                    }
+                }
+                if(!result.isEmpty())
+                    return;
+            }
+        }
+    }
+
+    // For every neighbour of square held by an enemy blocker, the opposite square that would complete the capture
+    private int[] getEmptiesAround(int square, byte enemy) {
+        int[] empties = new int[4];
+        for(int dir = BitBoard.UP; dir <= BitBoard.LEFT; dir++) {
+            int blocker = BitBoard.neighbour(square, dir);
+            int opposite = BitBoard.neighbour(square, BitBoard.opposite(dir));
+            empties[dir] = blocker != BitBoard.NONE && opposite != BitBoard.NONE && isBlocker(blocker, enemy) ? opposite : BitBoard.NONE;
+        }
+        return empties;
+    }
+
+    private boolean willBeCaptured(int move) {
+        int to = Move.to(move);
+        byte enemy = Move.pawn(move) == BLACK ? WHITE : BLACK;
+        for(int dir = BitBoard.UP; dir <= BitBoard.LEFT; dir++) {
+            int blocker = BitBoard.neighbour(to, dir);
+            int empty = BitBoard.neighbour(to, BitBoard.opposite(dir));
+            if(blocker != BitBoard.NONE && empty != BitBoard.NONE && isBlockerAfter(move, blocker, enemy)
+                    && getPawnAfter(move, empty) == EMPTY && isReachableAfter(move, empty, enemy))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean willKingBeCaptured(int move) {
+        int king = Move.pawn(move) == KING ? Move.to(move) : kingSquare;
+        int blockers = 1;
+        if(king == BitBoard.CITADEL || isNearCitadel(king))
+            blockers = 3;
+        int empties = 0;
+        int count = 0;
+        for(int dir = BitBoard.UP; dir <= BitBoard.LEFT; dir++) {
+            int blocker = BitBoard.neighbour(king, dir);
+            int empty = BitBoard.neighbour(king, BitBoard.opposite(dir));
+            if(blocker != BitBoard.NONE && empty != BitBoard.NONE && isBlockerAfter(move, blocker, BLACK)) {
+                empties |= 1 << dir;
+                count++;
+            }
+        }
+        if(count < blockers)
+            return false;
+        for(int dir = BitBoard.UP; dir <= BitBoard.LEFT; dir++) {
+            int empty = BitBoard.neighbour(king, BitBoard.opposite(dir));
+            if((empties & 1 << dir) != 0 && getPawnAfter(move, empty) == EMPTY && isReachableAfter(move, empty, BLACK))
+                return true;
+        }
+        return false;
+    }
+
+    private byte getPawnAfter(int move, int square) {
+        if(square == Move.to(move))
+            return Move.pawn(move);
+        if(square == Move.from(move))
+            return EMPTY;
+        for(int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++)
+            if(Move.captures(move, direction) && Move.capturedSquare(move, direction) == square)
+                return EMPTY;
+        return getPawn(square);
+    }
+
+    private boolean isBlockerAfter(int move, int square, byte side) {
+        if(BitBoard.contains(BitBoard.BOARD_BLOCKERS, square))
+            return true;
+        byte pawn = getPawnAfter(move, square);
+        return side == BLACK ? pawn == BLACK : pawn == WHITE || pawn == KING;
+    }
+
+    // Whether a pawn of side could move to square once move is played: along each line through square the
+    // nearest pawn is found from the patched line occupancy and its own move table is checked for the square
+    private boolean isReachableAfter(int move, int square, byte side) {
+        for(int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++) {
+            boolean vertical = BitBoard.isVertical(direction);
+            int line = vertical ? BitBoard.column(square) : BitBoard.row(square);
+            int position = vertical ? BitBoard.row(square) : BitBoard.column(square);
+            int occupancy = getOccupancyAfter(move, vertical, line);
+            int nearest;
+            if(direction == BitBoard.UP || direction == BitBoard.LEFT) {
+                int bits = occupancy & ((1 << position) - 1);
+                if(bits == 0)
+                    continue;
+                nearest = 31 - Integer.numberOfLeadingZeros(bits);
+            } else {
+                int bits = occupancy & ~((2 << position) - 1);
+                if(bits == 0)
+                    continue;
+                nearest = Integer.numberOfTrailingZeros(bits);
+            }
+            int attacker = vertical ? BitBoard.square(nearest, line) : BitBoard.square(line, nearest);
+            byte pawn = getPawnAfter(move, attacker);
+            if(side == BLACK ? pawn != BLACK : pawn != WHITE && pawn != KING)
+                continue;
+            boolean campMover = pawn == BLACK && BitBoard.contains(BitBoard.CAMPS, attacker);
+            if((MoveTables.getDestinations(attacker, campMover, BitBoard.opposite(direction), occupancy) & 1 << position) != 0
+                    && (!BitBoard.contains(BitBoard.CAMPS, square) || isCampPath(square, attacker, direction)))
+                return true;
+        }
+        return false;
+    }
+
+    // A camp is only threatened from inside its own block, not by a camp pawn crossing the board from another one
+    private boolean isCampPath(int from, int to, int direction) {
+        for(int square = BitBoard.neighbour(from, direction); square != to; square = BitBoard.neighbour(square, direction))
+            if(!BitBoard.contains(BitBoard.CAMPS, square))
+                return false;
+        return true;
+    }
+
+    private void insideSquares(int from, int to, IntArrayList result) {
+        int direction = BitBoard.direction(from, to);
+        for(int square = from; square != to; square = BitBoard.neighbour(square, direction))
+            result.add(square);
+    }
+
+    private int searchByDirection(int square, int direction, byte pawn) {
+        boolean camp = false, citadel = false;
+        for (int s = square; s != BitBoard.NONE; s = BitBoard.neighbour(s, direction)) {
+            if (isOnPosition(s, CAMP))
+                camp = true;
+            else if (isOnPosition(s, CITADEL))
+                citadel = true;
+            else if (camp || citadel)
+                break;
+            if (isEnemy(getPawn(s), pawn))
+                return s;
+            if (isOccupied(s))
+                break;
+        }
+        return BitBoard.NONE;
+    }
+
+    private boolean isPreventingLoose(int move, int kingMove, IntArrayList toProtect) {
+        byte player = Move.pawn(move);
+        int to = Move.to(move);
+
+        if (player == BLACK && kingMove != Move.NONE) {
+            int row = BitBoard.row(to);
+            int column = BitBoard.column(to);
+            int kre = BitBoard.row(Move.to(kingMove));
+            int krk = BitBoard.row(Move.from(kingMove));
+            int kce = BitBoard.column(Move.to(kingMove));
+            int kck = BitBoard.column(Move.from(kingMove));
+            if (row == krk && ((column > kck && column <= kce) || (column < kck && column >= kce)))
+                return true;
+            if (column == kck && ((row > krk && row <= kre) || (row < krk && row >= kre)))
+                return true;
+        }
+        else if(player == BLACK && !toProtect.isEmpty()) {
+            return toProtect.contains(to);
+        }
+        else if(player == WHITE && !toProtect.isEmpty() && !willKingBeCaptured(move)) {
+            return Move.isCapture(move) || toProtect.contains(to);
+        }
+        else if(player == KING && !toProtect.isEmpty() && !willKingBeCaptured(move))
+            return true;
+        return false;
+    }
+
+    // First winning move in legal move order, found from the capture and king generators alone.
+    // Wins are either captures or king moves, so quiet pawn moves never need to be generated.
+    private int getWinningMove() {
+        if (firstMove || (playerTurn == WHITE && getBlackPawns() == 0))
+            return Move.NONE;
+        MoveBuffers buffers = MoveBuffers.get();
+        IntArrayList captures = buffers.captures;
+        captures.clear();
+        if (playerTurn == BLACK ? isKingExposed() : getBlackPawns() <= 4)
+            getMoves(playerTurn, CAPTURE_MOVES, captures);
+        int win = Move.NONE;
+        for (int i = 0; i < captures.size() && win == Move.NONE; i++) {
+            int move = captures.get(i);
+            if (Move.pawn(move) != KING && isWin(move))
+                win = move;
+        }
+        if (playerTurn == BLACK || (win != Move.NONE && Move.from(win) < kingSquare))
+            return win;
+        IntArrayList kingMoves = buffers.kingMoves;
+        getKingMoves(kingMoves);
+        for (int i = 0; i < kingMoves.size(); i++)
+            if (isWin(kingMoves.get(i)))
+                return kingMoves.get(i);
+        return win;
+    }
+
+    // Black move capturing the king, if any
+    int getKingCaptureMove() {
+        if (!isKingExposed())
+            return Move.NONE;
+        IntArrayList captures = MoveBuffers.get().captures;
+        getMoves(BLACK, CAPTURE_MOVES, captures);
+        for (int i = 0; i < captures.size(); i++)
+            if (isWin(captures.get(i)))
+                return captures.get(i);
+        return Move.NONE;
+    }
+
+    // Whether a quiet move would repeat an earlier position and end the game in a draw
+    boolean isRepetition(int move) {
+        if (Move.isCapture(move))
+            return false;
+        byte pawn = Move.pawn(move);
+        return drawConditions.contains(boardKey ^ Zobrist.pawn(pawn, Move.from(move)) ^ Zobrist.pawn(pawn, Move.to(move)));
+    }
+
+    // Black moves onto the empty squares next to the king that could still take part in its capture
+    void getKingApproaches(IntArrayList moves) {
+        moves.clear();
+        for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++) {
+            int target = BitBoard.neighbour(kingSquare, direction);
+            int opposite = BitBoard.neighbour(kingSquare, BitBoard.opposite(direction));
+            // a white pawn or the board edge on the other side means no capture can involve this square
+            if (target == BitBoard.NONE || isOccupied(target) || opposite == BitBoard.NONE
+                    || getPawn(opposite) == WHITE)
+                continue;
+            for (int d = BitBoard.UP; d <= BitBoard.LEFT; d++) {
+                int square = BitBoard.neighbour(target, d);
+                while (square != BitBoard.NONE && !isOccupied(square))
+                    square = BitBoard.neighbour(square, d);
+                if (square == BitBoard.NONE || !BitBoard.contains(blackLo, blackHi, square))
+                    continue;
+                int back = BitBoard.opposite(d);
+                int line = BitBoard.isVertical(back) ? BitBoard.row(target) : BitBoard.column(target);
+                if ((getDestinations(square, back) & 1 << line) != 0)
+                    moves.add(toMove(square, target));
+            }
+        }
+    }
+
+    // Whether an empty square next to the king closes a custodian pair on it, which every king
+    // capture needs
+    private boolean isKingExposed() {
+        for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++) {
+            int square = BitBoard.neighbour(kingSquare, direction);
+            int blocker = BitBoard.neighbour(kingSquare, BitBoard.opposite(direction));
+            if (square != BitBoard.NONE && blocker != BitBoard.NONE && !isOccupied(square) && isBlocker(blocker, BLACK))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isWin(int move) {
+        byte player = Move.pawn(move);
+        if (player == BLACK) {
+            for (int d = BitBoard.UP; d <= BitBoard.LEFT; d++)
+                if (Move.captures(move, d) && Move.capturedSquare(move, d) == kingSquare)
+                    return true;
+        } else {
+            if (player == KING && isOnPosition(Move.to(move), ESCAPE))
+                return true;
+            return getBlackPawns() - Move.capturesNumber(move) == 0;
+        }
+        return false;
+    }
+
+    public LinkedList<TablutAction> getLegalActions() {
+        if (blackWin || whiteWin || draw)
+            return new LinkedList<TablutAction>();
+        return getLegalActions(this.playerTurn);
+    }
+
+    public LinkedList<TablutAction> getLegalActions(byte player) {
+        IntArrayList moves = new IntArrayList(128);
+        getLegalMoves(player, moves);
+        LinkedList<TablutAction> actions = new LinkedList<>();
+        for (int i = 0; i < moves.size(); i++)
+            actions.add(toAction(moves.get(i)));
+        return actions;
+    }
+
+    public void getLegalMoves(IntArrayList moves) {
+        moves.clear();
+        if (blackWin || whiteWin || draw)
+            return;
+        getLegalMoves(this.playerTurn, moves);
+    }
+
+    public void getLegalMoves(byte player, IntArrayList moves) {
+        getMoves(player, ALL_MOVES, moves);
+    }
+
+    public void getCaptureMoves(IntArrayList moves) {
+        moves.clear();
+        if (!blackWin && !whiteWin && !draw)
+            getMoves(playerTurn, CAPTURE_MOVES, moves);
+    }
+
+    public void getQuietMoves(IntArrayList moves) {
+        moves.clear();
+        if (!blackWin && !whiteWin && !draw)
+            getMoves(playerTurn, QUIET_MOVES, moves);
+    }
+
+    public void getKingMoves(IntArrayList moves) {
+        moves.clear();
+        if (!blackWin && !whiteWin && !draw)
+            getPawnMoves(kingSquare, KING, moves, ALL_MOVES, getCaptureTargets(WHITE));
+    }
+
+    private void getMoves(byte player, int filter, IntArrayList moves) {
+        moves.clear();
+        long lo = player == BLACK ? blackLo : whiteLo;
+        long hi = player == BLACK ? blackHi : whiteHi;
+        long[] targets = getCaptureTargets(player);
+        for (int square = BitBoard.first(lo, hi); square != BitBoard.NONE; square = BitBoard.next(lo, hi, square))
+            getPawnMoves(square, getPawn(square), moves, filter, targets);
+    }
+
+    // Squares where a pawn of the given side would sandwich an enemy against one of its blockers:
+    // every capturing move lands on one of them, so the other destinations skip the capture test.
+    private long[] getCaptureTargets(byte player) {
+        long[] targets = MoveBuffers.get().targets;
+        long enemyLo = player == BLACK ? whiteLo : blackLo;
+        long enemyHi = player == BLACK ? whiteHi : blackHi;
+        targets[0] = 0;
+        targets[1] = 0;
+        for (int square = BitBoard.first(enemyLo, enemyHi); square != BitBoard.NONE; square = BitBoard.next(enemyLo, enemyHi, square)) {
+            for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++) {
+                int target = BitBoard.neighbour(square, direction);
+                int blocker = BitBoard.neighbour(square, BitBoard.opposite(direction));
+                if (target == BitBoard.NONE || blocker == BitBoard.NONE || !isBlocker(blocker, player))
+                    continue;
+                targets[0] |= BitBoard.low(target);
+                targets[1] |= BitBoard.high(target);
+            }
+        }
+        return targets;
+    }
+
+    private void getPawnMoves(int from, byte pawn, IntArrayList moves) {
+        getPawnMoves(from, pawn, moves, ALL_MOVES, getCaptureTargets(pawn == BLACK ? BLACK : WHITE));
+    }
+
+    private void getPawnMoves(int from, byte pawn, IntArrayList moves, int filter, long[] targets) {
+        for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++) {
+            int destinations = getDestinations(from, direction);
+            boolean vertical = BitBoard.isVertical(direction);
+            boolean backwards = direction == BitBoard.UP || direction == BitBoard.LEFT;
+            while (destinations != 0) {
+                int line = backwards ? 31 - Integer.numberOfLeadingZeros(destinations)
+                        : Integer.numberOfTrailingZeros(destinations);
+                destinations &= ~(1 << line);
+                int to = vertical ? BitBoard.square(line, BitBoard.column(from)) : BitBoard.square(BitBoard.row(from), line);
+                int captures = BitBoard.contains(targets, to) ? getCaptures(to, pawn) : 0;
+                if (filter == CAPTURE_MOVES ? captures != 0 : filter != QUIET_MOVES || captures == 0)
+                    moves.add(Move.encode(from, to, pawn, captures));
+            }
+        }
+    }
+
+    private int getCaptures(int to, byte pawn) {
+        boolean black = pawn == BLACK;
+        long enemyLo = black ? whiteLo : blackLo;
+        long enemyHi = black ? whiteHi : blackHi;
+        long blockerLo = (black ? blackLo : whiteLo) | BitBoard.BOARD_BLOCKERS[0];
+        long blockerHi = (black ? blackHi : whiteHi) | BitBoard.BOARD_BLOCKERS[1];
+        int captures = 0;
+        for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++) {
+            int blocker = CaptureTables.getCustodian(to, direction);
+            if (blocker == BitBoard.NONE || !BitBoard.contains(blockerLo, blockerHi, blocker))
+                continue;
+            int captured = BitBoard.neighbour(to, direction);
+            if (BitBoard.contains(enemyLo, enemyHi, captured)
+                    && (captured != kingSquare || CaptureTables.isKingCaptured(captured, to, blackLo, blackHi)))
+                captures |= 1 << direction;
+        }
+        return captures;
+    }
+
+    public TablutAction toAction(int move) {
+        int to = Move.to(move);
+        TablutAction action = new TablutAction(BitBoard.toCoordinates(to),
+                new Pawn(Move.pawn(move), BitBoard.toCoordinates(Move.from(move))));
+        for (int direction : new int[] { BitBoard.DOWN, BitBoard.UP, BitBoard.RIGHT, BitBoard.LEFT }) {
+            if (Move.captures(move, direction)) {
+                int captured = Move.capturedSquare(move, direction);
+                action.addCapture(new Capture(new Pawn(getPawn(captured), BitBoard.toCoordinates(captured))));
+            }
+        }
+        return action;
+    }
+
+    public int toMove(int from, int to) {
+        byte pawn = getPawn(from);
+        return Move.encode(from, to, pawn, getCaptures(to, pawn));
+    }
+
+    public int toMove(TablutAction action) {
+        int to = BitBoard.square(action.coordinates);
+        int captures = 0;
+        for (Capture capture : action.getCaptured()) {
+            int captured = BitBoard.square(capture.getCaptured().position);
+            for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++)
+                if (BitBoard.neighbour(to, direction) == captured)
+                    captures |= 1 << direction;
+        }
+        return Move.encode(BitBoard.square(action.pawn.position), to, action.pawn.getPawnType(), captures);
+    }
+
+    public void makeAction(TablutAction action) {
+        if (firstMove && playerTurn == WHITE)
+            firstAction = action;
+        endOpening();
+        playMove(toMove(action));
+    }
+
+    public void makeAction(int move) {
+        if (firstMove && playerTurn == WHITE)
+            firstAction = toAction(move);
+        endOpening();
+        playMove(move);
+    }
+
+    // The opening is white's first move and black's reply to it, so it is over once black moves
+    private void endOpening() {
+        if (firstMove && playerTurn == BLACK)
+            firstMove = false;
+    }
+
+    public void makeMove(int move) {
+        UndoStack undo = UndoStack.get();
+        int i = undo.push();
+        int flags = (whiteWin ? UndoStack.WHITE_WIN : 0) | (blackWin ? UndoStack.BLACK_WIN : 0)
+                | (draw ? UndoStack.DRAW : 0) | (firstMove ? UndoStack.FIRST_MOVE : 0);
+        undo.moves[i] = move;
+        undo.kingSquares[i] = kingSquare;
+        undo.previousMoves[i] = previousMove;
+        undo.drawConditions[i] = drawConditions;
+        undo.firstActions[i] = firstAction;
+        undo.flags[i] = flags;
+        makeAction(move);
+    }
+
+    public void unmakeMove() {
+        UndoStack undo = UndoStack.get();
+        int i = undo.pop();
+        int flags = undo.flags[i];
+        restoreBoard(undo.moves[i], undo.kingSquares[i]);
+        whiteWin = (flags & UndoStack.WHITE_WIN) != 0;
+        blackWin = (flags & UndoStack.BLACK_WIN) != 0;
+        draw = (flags & UndoStack.DRAW) != 0;
+        firstMove = (flags & UndoStack.FIRST_MOVE) != 0;
+        drawConditions = undo.drawConditions[i];
+        firstAction = undo.firstActions[i];
+        previousMove = undo.previousMoves[i];
+        undo.drawConditions[i] = null;
+        undo.firstActions[i] = null;
+        if (this.playerTurn == WHITE)
+            this.playerTurn = BLACK;
+        else
+            this.playerTurn = WHITE;
+    }
+
+    private void playMove(int move) {
+        int to = Move.to(move);
+        byte pawn = Move.pawn(move);
+        setPawn(Move.from(move), EMPTY);
+        setPawn(to, pawn);
+        if (pawn == KING && isOnPosition(to, ESCAPE)) {
+            whiteWin = true;
+        }
+        if (Move.isCapture(move)) {
+            drawConditions = DrawHistory.EMPTY;
+            for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++) {
+                if (!Move.captures(move, direction))
+                    continue;
+                int square = Move.capturedSquare(move, direction);
+                if (square == kingSquare)
+                    blackWin = true;
+                setPawn(square, EMPTY);
+            }
+        }
+        if (drawConditions.contains(boardKey))
+            draw = true;
+        else
+            drawConditions = drawConditions.add(boardKey);
+        this.previousMove = move;
+        if (this.playerTurn == WHITE)
+            this.playerTurn = BLACK;
+        else
+            this.playerTurn = WHITE;
+    }
+
+    public void makeTemporaryAction(TablutAction action) {
+        setPawn(BitBoard.square(action.pawn.position), EMPTY);
+        setPawn(BitBoard.square(action.coordinates), action.pawn.getPawnType());
+        for (Capture capture : action.getCaptured()) {
+            setPawn(BitBoard.square(capture.getCaptured().position), EMPTY);
+        }
+    }
+
+    public void undoTemporaryAction(TablutAction action) {
+        setPawn(BitBoard.square(action.coordinates), EMPTY);
+        setPawn(BitBoard.square(action.pawn.position), action.pawn.getPawnType());
+        for (Capture capture : action.getCaptured()) {
+            setPawn(BitBoard.square(capture.getCaptured().position), capture.getCaptured().getPawnType());
+        }
+    }
+
+    private void restoreBoard(int move, int king) {
+        byte pawn = Move.pawn(move);
+        setPawn(Move.to(move), EMPTY);
+        setPawn(Move.from(move), pawn);
+        for (int direction = BitBoard.UP; direction <= BitBoard.LEFT; direction++) {
+            if (!Move.captures(move, direction))
+                continue;
+            int square = Move.capturedSquare(move, direction);
+            setPawn(square, pawn != BLACK ? BLACK : square == king ? KING : WHITE);
+        }
+    }
+
+    private boolean isBlocker(int square, byte pawn) {
+        if (BitBoard.contains(BitBoard.BOARD_BLOCKERS, square))
+            return true;
+        if (pawn == BLACK)
+            return BitBoard.contains(blackLo, blackHi, square);
+        return BitBoard.contains(whiteLo, whiteHi, square);
+    }
+
+    public boolean isBoardBlocker(Coordinates blocker) {
+        return BitBoard.contains(BitBoard.BOARD_BLOCKERS, BitBoard.square(blocker));
+    }
+
+    private boolean isEnemy(byte enemy, byte pawn) {
+        if (enemy == EMPTY || pawn == EMPTY)
+            return false;
+        if (enemy == KING)
+            enemy = WHITE;
+        if (pawn == KING)
+            pawn = WHITE;
+        return pawn != enemy;
+    }
+
+    private boolean isOnPosition(Coordinates coordinates, byte position) {
+        return isOnPosition(BitBoard.square(coordinates), position);
+    }
+
+    private boolean isOnPosition(int square, byte position) {
+        switch (position) {
+            case ESCAPE:
+                return BitBoard.contains(BitBoard.ESCAPES, square);
+            case CAMP:
+                return BitBoard.contains(BitBoard.CAMPS, square);
+            case CITADEL:
+                return square == BitBoard.CITADEL;
+        }
+        return !BitBoard.contains(BitBoard.ESCAPES, square) && !BitBoard.contains(BitBoard.CAMPS, square)
+                && square != BitBoard.CITADEL;
+    }
+
+    public boolean isWhiteWin() {
+        return whiteWin;
+    }
+
+    public boolean isBlackWin() {
+        return blackWin;
+    }
+
+    public boolean isDraw() {
+        return draw;
+    }
+
+    public byte[][] getPawns() {
+        byte[][] pawns = new byte[BOARD_SIZE][BOARD_SIZE];
+        for (int square = BitBoard.first(occupiedLo, occupiedHi); square != BitBoard.NONE; square = BitBoard.next(occupiedLo, occupiedHi, square))
+            pawns[BitBoard.row(square)][BitBoard.column(square)] = getPawn(square);
+        return pawns;
+    }
+
+    public byte getPlayerTurn() {
+        return this.playerTurn;
+    }
+
+    public DrawHistory getDrawConditions() {
+        return this.drawConditions;
+    }
+
+    public int getBlackPawns() {
+        return BitBoard.count(blackLo, blackHi);
+    }
+
+    public int getWhitePawns() {
+        return BitBoard.count(whiteLo, whiteHi);
+    }
+
+    public boolean isFirstMove() {
+        return firstMove;
+    }
+
+    public void setFirstMove(boolean firstMove) {
+        this.firstMove = firstMove;
+    }
+
+    void setResult(boolean whiteWin, boolean blackWin, boolean draw) {
+        this.whiteWin = whiteWin;
+        this.blackWin = blackWin;
+        this.draw = draw;
+    }
+
+    public TablutAction getFirstAction() {
+        return firstAction;
+    }
+
+    public void setPreviousMove(int previousMove) {
+        this.previousMove = previousMove;
+    }
+
+    public int getPreviousMove() {
+        return previousMove;
+    }
+
+    public Quadrant getQuadrant(Coordinates c) {
+        for(Quadrant q : Quadrant.quadrants)
+            if(q.contains(c))
+                return q;
+        return null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package domain;
+
+import java.util.Arrays;
+
+final class UndoStack {
+    private static final ThreadLocal<UndoStack> stacks = ThreadLocal.withInitial(UndoStack::new);
+    private static final int DEFAULT_CAPACITY = 128;
+
+    static final int WHITE_WIN = 1;
+    static final int BLACK_WIN = 1 << 1;
+    static final int DRAW = 1 << 2;
+    static final int FIRST_MOVE = 1 << 3;
+
+    int[] moves = new int[DEFAULT_CAPACITY];
+    int[] kingSquares = new int[DEFAULT_CAPACITY];
+    int[] previousMoves = new int[DEFAULT_CAPACITY];
+    int[] flags = new int[DEFAULT_CAPACITY];
+    DrawHistory[] drawConditions = new DrawHistory[DEFAULT_CAPACITY];
+    TablutAction[] firstActions = new TablutAction[DEFAULT_CAPACITY];
+    private int size;
+
+    private UndoStack() {
+    }
+
+    static UndoStack get() {
+        return stacks.get();
+    }
+
+    int push() {
+        if (size == moves.length) {
+            int capacity = size * 2;
+            moves = Arrays.copyOf(moves, capacity);
+            kingSquares = Arrays.copyOf(kingSquares, capacity);
+            previousMoves = Arrays.copyOf(previousMoves, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            drawConditions = Arrays.copyOf(drawConditions, capacity);
+            firstActions = Arrays.copyOf(firstActions, capacity);
+        }
+        return size++;
+    }
+
+    int pop() {
+        if (size == 0)
+            throw new IllegalStateException("No move to undo");
+        return --size;
+    }
+
+    int size() {
+        return size;
+    }
+}
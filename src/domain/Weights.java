@@ -17,7 +17,7 @@ public enum Weights {
         return value;
     }
 
-    public static Integer[] getWeights() {
-        return new Integer[]{1, 75, 75, 75, 150};
+    public static int[] getWeights() {
+        return new int[]{1, 75, 75, 75, 150};
     }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package domain;
+
+import java.util.Random;
+
+public final class Zobrist {
+    private static final long SEED = 0x54616272757420L;
+
+    static final long[][] PAWNS = initPawns();
+    static final long BLACK_TURN = new Random(SEED - 1).nextLong();
+
+    private Zobrist() {
+    }
+
+    private static long[][] initPawns() {
+        Random random = new Random(SEED);
+        long[][] keys = new long[TablutState.KING + 1][BitBoard.SQUARES];
+        for (int pawn = TablutState.WHITE; pawn <= TablutState.KING; pawn++)
+            for (int square = 0; square < BitBoard.SQUARES; square++)
+                keys[pawn][square] = random.nextLong();
+        return keys;
+    }
+
+    public static long pawn(byte pawn, int square) {
+        return PAWNS[pawn][square];
+    }
+
+    public static long turn(byte playerTurn) {
+        return playerTurn == TablutState.BLACK ? BLACK_TURN : 0L;
+    }
+}
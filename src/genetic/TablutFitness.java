@@ -16,7 +16,7 @@ public class TablutFitness implements FitnessFunction<Integer> {
     public double apply(Individual<Integer> individual) {
         List<Integer> weightsList = individual.getRepresentation();
 
-        Integer[] weights = new Integer[weightsList.size()];
+        int[] weights = new int[weightsList.size()];
         for(int i = 0; i < weightsList.size(); i++) 
             weights[i] = weightsList.get(i);
 
@@ -1,12 +1,21 @@
 package montecarlo;
 
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public class MonteCarloNode<S, A> {
-    private double utility;
-    private int playoutsNumber;
-    private boolean leaf;
+    private static final int NEW = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+
+    // statistics are shared by the search threads; utility holds the bits of a double
+    private final AtomicLong utility = new AtomicLong(Double.doubleToLongBits(0));
+    private final AtomicInteger playoutsNumber = new AtomicInteger();
+    private final AtomicInteger virtualLosses = new AtomicInteger();
+    private final AtomicInteger expansion = new AtomicInteger(NEW);
+    private volatile boolean leaf;
 
     private S state;
     private A action;
@@ -15,7 +24,8 @@ public class MonteCarloNode<S, A> {
     
     //keep oreded maybe
     //polymorphism for this set
-    LinkedList<MonteCarloNode<S, A>> children = new LinkedList<>();
+    // replaced as a whole when the node is expanded, so readers never see a list being filled
+    volatile LinkedList<MonteCarloNode<S, A>> children = new LinkedList<>();
 
     public MonteCarloNode(S state) {
         this.leaf = true;
@@ -43,11 +53,15 @@ public class MonteCarloNode<S, A> {
     }
 
     public double getUtility() {
-        return utility;
+        return Double.longBitsToDouble(utility.get());
     }
 
     public int getPlayoutsNumber() {
-        return playoutsNumber;
+        return playoutsNumber.get();
+    }
+
+    public int getVirtualLosses() {
+        return virtualLosses.get();
     }
 
 	public MonteCarloNode<S, A> getParent() {
@@ -62,6 +76,21 @@ public class MonteCarloNode<S, A> {
         this.leaf = leaf;
 	}
 
+    // Claims the expansion of the node for the calling thread; only one thread ever gets true
+    public boolean startExpansion() {
+        return expansion.compareAndSet(NEW, EXPANDING);
+    }
+
+    public boolean isExpanding() {
+        return expansion.get() == EXPANDING;
+    }
+
+    public void endExpansion(LinkedList<MonteCarloNode<S, A>> children) {
+        this.children = children;
+        this.leaf = children.isEmpty();
+        expansion.set(EXPANDED);
+    }
+
 	public void addChild(MonteCarloNode<S, A> child) {
         children.addLast(child);
 	}
@@ -72,11 +101,46 @@ public class MonteCarloNode<S, A> {
 
 	public void updatePlayoutResults(double utility) {
         if(utility >= 0) {
-            this.utility += utility;
-            this.playoutsNumber++;
+            addUtility(utility);
+            this.playoutsNumber.incrementAndGet();
         }
     }
-    
+
+    private void addUtility(double utility) {
+        long bits;
+        do {
+            bits = this.utility.get();
+        } while(!this.utility.compareAndSet(bits, Double.doubleToLongBits(Double.longBitsToDouble(bits) + utility)));
+    }
+
+    public void addVirtualLoss() {
+        virtualLosses.incrementAndGet();
+    }
+
+    public void removeVirtualLoss() {
+        virtualLosses.decrementAndGet();
+    }
+
+    // Adds the statistics of a tree grown independently from the same root, matching children by action
+    public void merge(MonteCarloNode<S, A> other) {
+        addUtility(other.getUtility());
+        this.playoutsNumber.addAndGet(other.getPlayoutsNumber());
+        for(MonteCarloNode<S, A> otherChild : other.children) {
+            MonteCarloNode<S, A> match = null;
+            for(MonteCarloNode<S, A> child : children)
+                if(child.action.equals(otherChild.action))
+                    match = child;
+            if(match == null) {
+                otherChild.parent = this;
+                addChild(otherChild);
+                this.leaf = false;
+            } else {
+                match.addUtility(otherChild.getUtility());
+                match.playoutsNumber.addAndGet(otherChild.getPlayoutsNumber());
+            }
+        }
+    }
+
     @Override
     public String toString() {
         if(state == null)
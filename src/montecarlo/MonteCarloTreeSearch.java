@@ -1,33 +1,132 @@
 package montecarlo;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import utils.WeightedSampler;
 
 public class MonteCarloTreeSearch<S, A> {
     protected MonteCarloGame<S, A> game;
     protected double end;
+    protected int threads;
+    protected Parallelism parallelism;
+    private ExecutorService executor;
+    // every search splits the samplers of its workers from this one
+    private WeightedSampler sampler = new WeightedSampler();
 
     public MonteCarloTreeSearch(MonteCarloGame<S, A> game, double timeout) {
+        this(game, timeout, 1, Parallelism.TREE);
+    }
+
+    public MonteCarloTreeSearch(MonteCarloGame<S, A> game, double timeout, int threads, Parallelism parallelism) {
+        if(threads < 1)
+            throw new IllegalArgumentException("Invalid threads number: " + threads);
         this.game = game;
         this.end = timeout * 1000;
+        this.threads = threads;
+        this.parallelism = parallelism;
+        if(threads > 1)
+            this.executor = Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "mcts-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public Parallelism getParallelism() {
+        return parallelism;
+    }
+
+    public void setSeed(long seed) {
+        this.sampler = new WeightedSampler(seed);
     }
 
     public A monteCarloTreeSearch(S state) {
-        long start = System.currentTimeMillis();
-        MonteCarloNode<S, A> tree = new MonteCarloNode<>(state);
+        return bestAction(search(state, System.currentTimeMillis()));
+    }
+
+    // With root parallelism every thread grows its own tree and the statistics of the root children
+    // are merged afterwards; with tree parallelism all the threads grow the same tree.
+    protected MonteCarloNode<S, A> search(S state, long start) {
+        if(threads == 1 || parallelism == Parallelism.TREE) {
+            MonteCarloNode<S, A> tree = createTree(state);
+            runWorkers(() -> {
+                grow(tree, start);
+                return tree;
+            });
+            return tree;
+        }
+        List<MonteCarloNode<S, A>> trees = runWorkers(() -> {
+            MonteCarloNode<S, A> tree = createTree(state);
+            grow(tree, start);
+            return tree;
+        });
+        MonteCarloNode<S, A> tree = trees.get(0);
+        for(int i = 1; i < trees.size(); i++)
+            tree.merge(trees.get(i));
+        return tree;
+    }
+
+    protected <T> List<T> runWorkers(Callable<T> worker) {
+        List<T> results = new ArrayList<>();
+        if(threads == 1) {
+            try {
+                WeightedSampler.set(sampler.split());
+                results.add(worker.call());
+            } catch(Exception e) {
+                throw new IllegalStateException("Search failed", e);
+            }
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<>();
+        for(int i = 0; i < threads; i++) {
+            WeightedSampler workerSampler = sampler.split();
+            futures.add(executor.submit(() -> {
+                WeightedSampler.set(workerSampler);
+                return worker.call();
+            }));
+        }
+        try {
+            for(Future<T> future : futures)
+                results.add(future.get());
+            return results;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("Search worker failed", e.getCause());
+        }
+    }
+
+    protected MonteCarloNode<S, A> createTree(S state) {
+        return new MonteCarloNode<>(state);
+    }
+
+    protected void grow(MonteCarloNode<S, A> tree, long start) {
         while(isTimeRemaining(start)) {
             MonteCarloNode<S, A> leaf = select(tree);
             LinkedList<MonteCarloNode<S, A>> children = expand(leaf);
-            if(children.isEmpty()) {
+            if(children != null && children.isEmpty()) {
                 children = new LinkedList<>();
-                leaf.isLeaf(true);
                 children.add(leaf);
             }
-            for(MonteCarloNode<S, A> child : children) {
-                double result = simulate(child);
-                backPropagate(result, child);
-            }
+            if(children != null)
+                for(MonteCarloNode<S, A> child : children) {
+                    double result = simulate(child);
+                    backPropagate(result, child);
+                }
+            removeVirtualLosses(leaf);
         }
-        return bestAction(tree);   
     }
 
     protected boolean isTimeRemaining(long start) {  
@@ -45,20 +144,40 @@ public class MonteCarloTreeSearch<S, A> {
                     bestChild = child;
                 }
             }
-            if(bestChild != null)
-                tree = bestChild;
+            if(bestChild == null)
+                break;
+            tree = bestChild;
+            // the virtual loss steers the other threads away from this path until it is back-propagated
+            if(isSharedTree())
+                tree.addVirtualLoss();
         }
         return tree;
     }
 
+    protected boolean isSharedTree() {
+        return threads > 1 && parallelism == Parallelism.TREE;
+    }
+
+    protected void removeVirtualLosses(MonteCarloNode<S, A> leaf) {
+        if(!isSharedTree())
+            return;
+        for(MonteCarloNode<S, A> node = leaf; node.getParent() != null; node = node.getParent())
+            node.removeVirtualLoss();
+    }
+
+    // Children of a node are created by one thread only. Returns null when another thread has
+    // expanded the leaf or is still expanding it, and an empty list when the leaf is terminal.
     protected LinkedList<MonteCarloNode<S, A>> expand(MonteCarloNode<S, A> leaf) {
-        leaf.isLeaf(false);
+        if(!leaf.startExpansion())
+            return leaf.isExpanding() || !leaf.isLeaf() ? null : leaf.getChildren();
+        LinkedList<MonteCarloNode<S, A>> children = new LinkedList<>();
         for(A action : game.getActions(leaf.getState())) {
             MonteCarloNode<S, A> child = new MonteCarloNode<>(game.getNextState(leaf.getState(), action),
                 action, leaf);
-            leaf.addChild(child);
+            children.addLast(child);
         }
-        return leaf.getChildren();
+        leaf.endExpansion(children);
+        return children;
     }
 
     protected double simulate(MonteCarloNode<S, A> child) {
@@ -88,8 +207,12 @@ public class MonteCarloTreeSearch<S, A> {
 
     protected double selectionPolicyValue(MonteCarloNode<S, A> node) {
         double C = Math.sqrt(2);
-        return (node.getUtility() / node.getPlayoutsNumber()) + C *
-            Math.sqrt(Math.log(node.getParent().getPlayoutsNumber()) / node.getPlayoutsNumber());
+        int playouts = node.getPlayoutsNumber() + node.getVirtualLosses();
+        if(playouts == 0)
+            return Double.POSITIVE_INFINITY;
+        int parentPlayouts = node.getParent().getPlayoutsNumber() + node.getParent().getVirtualLosses();
+        return (node.getUtility() / playouts) + C *
+            Math.sqrt(Math.log(parentPlayouts) / playouts);
     }
 
 }
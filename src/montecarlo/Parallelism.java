@@ -0,0 +1,5 @@
+package montecarlo;
+
+public enum Parallelism {
+    ROOT, TREE
+}
@@ -0,0 +1,86 @@
+package utils;
+
+import java.util.Arrays;
+
+public class IntArrayList {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] elements;
+    private int size;
+
+    public IntArrayList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntArrayList(int capacity) {
+        this.elements = new int[Math.max(capacity, 1)];
+    }
+
+    public void add(int element) {
+        if (size == elements.length)
+            elements = Arrays.copyOf(elements, size * 2);
+        elements[size++] = element;
+    }
+
+    public void addAll(IntArrayList list) {
+        for (int i = 0; i < list.size; i++)
+            add(list.elements[i]);
+    }
+
+    public int get(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return elements[index];
+    }
+
+    public void set(int index, int element) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        elements[index] = element;
+    }
+
+    public int removeLast() {
+        if (size == 0)
+            throw new IndexOutOfBoundsException("Index: -1, Size: 0");
+        return elements[--size];
+    }
+
+    public void swap(int i, int j) {
+        int temp = get(i);
+        elements[i] = get(j);
+        elements[j] = temp;
+    }
+
+    public void reverse(int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--)
+            swap(i, j);
+    }
+
+    public boolean contains(int element) {
+        for (int i = 0; i < size; i++)
+            if (elements[i] == element)
+                return true;
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
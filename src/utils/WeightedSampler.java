@@ -0,0 +1,80 @@
+package utils;
+
+import java.util.SplittableRandom;
+
+public final class WeightedSampler {
+    private static final ThreadLocal<WeightedSampler> samplers = ThreadLocal.withInitial(WeightedSampler::new);
+
+    private SplittableRandom random;
+
+    public WeightedSampler() {
+        this.random = new SplittableRandom();
+    }
+
+    public WeightedSampler(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    private WeightedSampler(SplittableRandom random) {
+        this.random = random;
+    }
+
+    // Sampler of the calling thread, which playouts and move ordering draw from
+    public static WeightedSampler get() {
+        return samplers.get();
+    }
+
+    // Makes the calling thread draw from the sampler; searches hand every worker one split from
+    // their own, so a seeded run repeats itself whichever pooled thread runs which worker.
+    public static void set(WeightedSampler sampler) {
+        samplers.set(sampler);
+    }
+
+    public WeightedSampler split() {
+        return new WeightedSampler(random.split());
+    }
+
+    public void reseed(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    public long nextLong() {
+        return random.nextLong();
+    }
+
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    // Turns weights into running totals in place and picks an index with probability
+    // proportional to its weight; all zero weights degrade to a uniform choice.
+    public int sample(IntArrayList weights) {
+        int size = weights.size();
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += Math.max(weights.get(i), 0);
+            weights.set(i, total);
+        }
+        if (total == 0)
+            return random.nextInt(size);
+        int target = random.nextInt(total);
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (weights.get(middle) > target)
+                high = middle;
+            else
+                low = middle + 1;
+        }
+        return low;
+    }
+
+    public int sample(IntArrayList items, IntArrayList weights) {
+        return items.get(sample(weights));
+    }
+}